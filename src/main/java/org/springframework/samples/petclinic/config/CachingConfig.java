@@ -0,0 +1,112 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.config;
+
+import java.util.Collection;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Caches of the service layer, independent of the repository profile. The caches are checked before a transaction
+ * is opened, so a hit costs no connection. Values read or evicted within a transaction only reach the cache once it
+ * commits.
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CachingConfig {
+
+    public static final String PET_TYPES = "petTypes";
+
+    public static final String PET_TYPES_BY_NAME = "petTypesByName";
+
+    public static final String SPECIALTIES = "specialties";
+
+    public static final String SPECIALTIES_BY_NAMES = "specialtiesByNames";
+
+    /**
+     * Owners with their pets and visits, by owner ID. Bounded in size, the least valuable aggregates being evicted by
+     * Caffeine's frequency-aware (W-TinyLFU) policy, so that a scan over many owners does not flush the busy ones.
+     */
+    public static final String OWNERS = "owners";
+
+    /**
+     * Results of owner searches by last name prefix, with the owners' pets and visits. Bounded by the number of owners
+     * held, each search weighing one more than the owners it returned. Every write to an owner scans all the searches
+     * held, see {@code OwnerSearches}, so the bound is kept to a few thousand owners.
+     */
+    public static final String OWNER_SEARCHES = "ownerSearches";
+
+    /**
+     * The snapshot of all vets with their specialties, which is refreshed in the background while it is being served.
+     */
+    public static final String VETS = "vets";
+
+    /**
+     * Serialized pages of the pet type, specialty and vet listings, as written by the REST controllers. The pages are
+     * held off the heap in direct buffers, so each cache is bounded by the bytes it holds, see {@link ByteSized}, and
+     * <code>-XX:MaxDirectMemorySize</code> has to allow for all three; they also expire, as the vet roster is
+     * refreshed from the database on its own.
+     */
+    public static final String PET_TYPE_RESPONSES = "petTypeResponses";
+
+    public static final String SPECIALTY_RESPONSES = "specialtyResponses";
+
+    public static final String VET_RESPONSES = "vetResponses";
+
+    /**
+     * A cached value weighed by the bytes it holds, in the caches bounded with <code>maximumWeight</code> in bytes.
+     */
+    public interface ByteSized {
+
+        int byteSize();
+
+    }
+
+    @Bean
+    CacheManager cacheManager(
+        @Value("${petclinic.cache.reference-data.spec:maximumSize=1000,expireAfterWrite=1h,recordStats}") String referenceDataSpec,
+        @Value("${petclinic.cache.owners.spec:maximumSize=10000,expireAfterWrite=10m,recordStats}") String ownersSpec,
+        @Value("${petclinic.cache.owner-searches.spec:maximumWeight=10000,expireAfterWrite=10m,recordStats}") String ownerSearchesSpec,
+        @Value("${petclinic.cache.vets.spec:expireAfterWrite=1h,recordStats}") String vetsSpec,
+        @Value("${petclinic.cache.responses.spec:maximumWeight=16777216,expireAfterWrite=1m,recordStats}") String responsesSpec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(PET_TYPES, PET_TYPES_BY_NAME, SPECIALTIES,
+            SPECIALTIES_BY_NAMES);
+        cacheManager.setCacheSpecification(referenceDataSpec);
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(OWNERS, Caffeine.from(ownersSpec).build());
+        cacheManager.registerCustomCache(OWNER_SEARCHES, Caffeine.from(ownerSearchesSpec)
+            .weigher((search, owners) -> ((Collection<?>) owners).size() + 1)
+            .build());
+        cacheManager.registerCustomCache(VETS, Caffeine.from(vetsSpec).build());
+        for (String responses : new String[]{PET_TYPE_RESPONSES, SPECIALTY_RESPONSES, VET_RESPONSES}) {
+            cacheManager.registerCustomCache(responses, Caffeine.from(responsesSpec)
+                .weigher((page, cached) -> cached instanceof ByteSized sized ? sized.byteSize() : 1)
+                .build());
+        }
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.VetDto;
+
+/**
+ * Customizes the JSON mapping of the REST API. The owner, pet and vet representations pass through the
+ * {@link #FIELDSET_FILTER} property filter, which is only set for the responses a client asked to trim to a sparse
+ * fieldset; any other response is written whole.
+ */
+@Configuration
+public class JacksonConfig {
+
+    public static final String FIELDSET_FILTER = "fieldset";
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer fieldsetFilter() {
+        return builder -> builder
+            .mixIn(OwnerDto.class, FieldsetFiltered.class)
+            .mixIn(PetDto.class, FieldsetFiltered.class)
+            .mixIn(VetDto.class, FieldsetFiltered.class)
+            .filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    @JsonFilter(FIELDSET_FILTER)
+    private abstract static class FieldsetFiltered {
+    }
+
+}
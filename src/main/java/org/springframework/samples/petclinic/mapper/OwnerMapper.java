@@ -1,12 +1,16 @@
 package org.springframework.samples.petclinic.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Named;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.rest.dto.OwnerDto;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.rest.dto.OwnerFieldsDto;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Maps Owner & OwnerDto using Mapstruct
@@ -16,11 +20,33 @@ public interface OwnerMapper {
 
     OwnerDto toOwnerDto(Owner owner);
 
+    @Named("withoutPets")
+    @Mapping(target = "pets", ignore = true)
+    OwnerDto toOwnerDtoWithoutPets(Owner owner);
+
+    @Named("withoutVisits")
+    @Mapping(target = "pets", qualifiedByName = "withoutVisits")
+    OwnerDto toOwnerDtoWithoutVisits(Owner owner);
+
+    /**
+     * Maps an owner read with the given associations, leaving out those it was read without.
+     */
+    default OwnerDto toOwnerDto(Owner owner, Set<Association> associations) {
+        if (!associations.contains(Association.PETS)) {
+            return toOwnerDtoWithoutPets(owner);
+        }
+        return associations.contains(Association.VISITS) ? toOwnerDto(owner) : toOwnerDtoWithoutVisits(owner);
+    }
+
     Owner toOwner(OwnerDto ownerDto);
 
     Owner toOwner(OwnerFieldsDto ownerDto);
 
     List<OwnerDto> toOwnerDtoCollection(Collection<Owner> ownerCollection);
 
+    default List<OwnerDto> toOwnerDtoCollection(Collection<Owner> ownerCollection, Set<Association> associations) {
+        return ownerCollection.stream().map(owner -> toOwnerDto(owner, associations)).toList();
+    }
+
     Collection<Owner> toOwners(Collection<OwnerDto> ownerDtos);
 }
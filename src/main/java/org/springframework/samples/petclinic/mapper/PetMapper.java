@@ -1,7 +1,10 @@
 package org.springframework.samples.petclinic.mapper;
 
+import org.mapstruct.IterableMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
+import org.mapstruct.Named;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.rest.dto.PetDto;
 import org.springframework.samples.petclinic.rest.dto.PetFieldsDto;
 import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
@@ -9,6 +12,8 @@ import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Map Pet & PetDto using mapstruct
@@ -19,8 +24,28 @@ public interface PetMapper {
     @Mapping(source = "owner.id", target = "ownerId")
     PetDto toPetDto(Pet pet);
 
+    @Named("withoutVisits")
+    @Mapping(source = "owner.id", target = "ownerId")
+    @Mapping(target = "visits", ignore = true)
+    PetDto toPetDtoWithoutVisits(Pet pet);
+
+    @Named("withoutVisits")
+    @IterableMapping(qualifiedByName = "withoutVisits")
+    List<PetDto> toPetDtosWithoutVisits(List<Pet> pets);
+
+    /**
+     * Maps a pet read with the given associations, leaving out those it was read without.
+     */
+    default PetDto toPetDto(Pet pet, Set<Association> associations) {
+        return associations.contains(Association.VISITS) ? toPetDto(pet) : toPetDtoWithoutVisits(pet);
+    }
+
     Collection<PetDto> toPetsDto(Collection<Pet> pets);
 
+    default Collection<PetDto> toPetsDto(Collection<Pet> pets, Set<Association> associations) {
+        return pets.stream().map(pet -> toPetDto(pet, associations)).toList();
+    }
+
     Collection<Pet> toPets(Collection<PetDto> pets);
 
     Pet toPet(PetDto petDto);
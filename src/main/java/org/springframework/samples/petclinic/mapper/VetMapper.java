@@ -1,11 +1,15 @@
 package org.springframework.samples.petclinic.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.Named;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.rest.dto.VetDto;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.rest.dto.VetFieldsDto;
 
 import java.util.Collection;
+import java.util.Set;
 
 /**
  * Map Vet & VetoDto using mapstruct
@@ -18,5 +22,20 @@ public interface VetMapper {
 
     VetDto toVetDto(Vet vet);
 
+    @Named("withoutSpecialties")
+    @Mapping(target = "specialties", ignore = true)
+    VetDto toVetDtoWithoutSpecialties(Vet vet);
+
+    /**
+     * Maps a vet, leaving out the associations not given.
+     */
+    default VetDto toVetDto(Vet vet, Set<Association> associations) {
+        return associations.contains(Association.SPECIALTIES) ? toVetDto(vet) : toVetDtoWithoutSpecialties(vet);
+    }
+
     Collection<VetDto> toVetDtos(Collection<Vet> vets);
+
+    default Collection<VetDto> toVetDtos(Collection<Vet> vets, Set<Association> associations) {
+        return vets.stream().map(vet -> toVetDto(vet, associations)).toList();
+    }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.model;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Associations an aggregate may be read with. A read that leaves one out does not load it, so callers must not
+ * access it on the entities returned, nor save them back.
+ * <p>
+ * {@link #VISITS} applies to the pets read, whether on their own or as those of an owner, so an owner is only read
+ * with visits when read with its {@link #PETS} as well.
+ */
+public enum Association {
+
+    PETS,
+
+    VISITS,
+
+    SPECIALTIES;
+
+    /**
+     * Every association, as an aggregate is read by default.
+     */
+    public static final Set<Association> ALL = Collections.unmodifiableSet(EnumSet.allOf(Association.class));
+
+}
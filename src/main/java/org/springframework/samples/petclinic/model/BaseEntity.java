@@ -24,6 +24,10 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Simple JavaBean domain object with an id property. Used as a base class for objects needing this property.
+ * <p>
+ * With JPA, IDs are drawn from one database sequence per table (<code>owners_seq</code>, <code>pets_seq</code>, ...)
+ * in blocks of 50, so that inserts need no round trip for their key and can be sent in JDBC batches; identity
+ * columns would rule batching out.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -31,7 +35,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 @MappedSuperclass
 public class BaseEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
     protected Integer id;
 
     public Integer getId() {
@@ -15,6 +15,8 @@
  */
 package org.springframework.samples.petclinic.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.beans.support.MutableSortDefinition;
 import org.springframework.beans.support.PropertyComparator;
 import org.springframework.core.style.ToStringCreator;
@@ -35,7 +37,17 @@ import java.util.*;
  */
 @Entity
 @Table(name = "owners")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "owners")
+@NamedEntityGraph(name = Owner.WITH_PETS,
+    attributeNodes = @NamedAttributeNode(value = "pets", subgraph = "pets"),
+    subgraphs = @NamedSubgraph(name = "pets", attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("visits")}))
 public class Owner extends Person {
+
+    /**
+     * Fetch plan of the owner endpoints: the pets with their type and visits.
+     */
+    public static final String WITH_PETS = "Owner.withPets";
+
     @Column(name = "address")
     @NotEmpty
     private String address;
@@ -49,7 +61,7 @@ public class Owner extends Person {
     @Digits(fraction = 0, integer = 10)
     private String telephone;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner", fetch = FetchType.EAGER)
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "owner")
     private Set<Pet> pets;
 
 
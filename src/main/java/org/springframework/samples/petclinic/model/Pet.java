@@ -33,20 +33,34 @@ import java.util.*;
  */
 @Entity
 @Table(name = "pets")
+@NamedEntityGraph(name = Pet.WITH_TYPE_AND_VISITS,
+    attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("visits")})
+@NamedEntityGraph(name = Pet.WITH_DETAILS,
+    attributeNodes = {@NamedAttributeNode("type"), @NamedAttributeNode("owner"), @NamedAttributeNode("visits")})
 public class Pet extends NamedEntity {
 
+    /**
+     * Fetch plan of the pet listing: everything a pet is rendered with, the owner being referenced by id only.
+     */
+    public static final String WITH_TYPE_AND_VISITS = "Pet.withTypeAndVisits";
+
+    /**
+     * Fetch plan of a single pet, which is also checked against its owner.
+     */
+    public static final String WITH_DETAILS = "Pet.withDetails";
+
     @Column(name = "birth_date", columnDefinition = "DATE")
     private LocalDate birthDate;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "type_id")
     private PetType type;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id")
     private Owner owner;
 
-    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet", fetch = FetchType.EAGER)
+    @OneToMany(cascade = CascadeType.ALL, mappedBy = "pet")
     private Set<Visit> visits;
 
     public LocalDate getBirthDate() {
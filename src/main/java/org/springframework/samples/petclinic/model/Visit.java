@@ -28,8 +28,14 @@ import java.time.LocalDate;
  */
 @Entity
 @Table(name = "visits")
+@NamedEntityGraph(name = Visit.WITH_PET, attributeNodes = @NamedAttributeNode("pet"))
 public class Visit extends BaseEntity {
 
+    /**
+     * Fetch plan of the visit endpoints: the pet itself, but neither its owner nor its other visits.
+     */
+    public static final String WITH_PET = "Visit.withPet";
+
     /**
      * Holds value of property date.
      */
@@ -46,7 +52,7 @@ public class Visit extends BaseEntity {
     /**
      * Holds value of property pet.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "pet_id")
     private Pet pet;
 
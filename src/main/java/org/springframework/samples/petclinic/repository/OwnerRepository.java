@@ -16,8 +16,11 @@
 package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.BaseEntity;
 import org.springframework.samples.petclinic.model.Owner;
 
@@ -52,6 +55,16 @@ public interface OwnerRepository {
      */
     Owner findById(int id) throws DataAccessException;
 
+    /**
+     * Retrieve an <code>Owner</code> from the data store by id, with the given associations only.
+     *
+     * @param id the id to search for
+     * @param associations the associations to load: the pets of the owner, with their types, and their visits
+     * @return the <code>Owner</code> if found
+     * @throws org.springframework.dao.DataRetrievalFailureException if not found
+     */
+    Owner findById(int id, Set<Association> associations) throws DataAccessException;
+
 
     /**
      * Save an <code>Owner</code> to the data store, either inserting or updating it.
@@ -68,6 +81,38 @@ public interface OwnerRepository {
      * found)
      */
 	Collection<Owner> findAll() throws DataAccessException;
+
+    /**
+     * Retrieve one keyset page of <code>Owner</code>s from the data store, ordered by id.
+     *
+     * @param afterId only owners with a greater id are returned
+     * @param limit the maximum number of owners returned
+     * @param associations the associations to load: the pets of the owners, with their types, and their visits
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Owner</code>s
+     */
+    Collection<Owner> findAll(int afterId, int limit, Set<Association> associations) throws DataAccessException;
+
+    /**
+     * Retrieve one keyset page of the <code>Owner</code>s whose last name <i>starts</i> with the given name, ordered by
+     * id.
+     *
+     * @param lastName Value to search for
+     * @param afterId only owners with a greater id are returned
+     * @param limit the maximum number of owners returned
+     * @param associations the associations to load: the pets of the owners, with their types, and their visits
+     * @return a <code>Collection</code> of at most <code>limit</code> matching <code>Owner</code>s
+     */
+    Collection<Owner> findByLastName(String lastName, int afterId, int limit, Set<Association> associations)
+        throws DataAccessException;
+
+    /**
+     * Pass every <code>Owner</code> in the data store, with its pets and visits, to the action in order of id, reading
+     * them from a forward-only cursor. Owners already passed on are not retained, so memory use does not grow with
+     * the number of owners; the call must run within a transaction.
+     *
+     * @param action receives each <code>Owner</code> in turn and must not keep a reference to it
+     */
+    void streamAll(Consumer<? super Owner> action) throws DataAccessException;
 	
     /**
      * Delete an <code>Owner</code> to the data store by <code>Owner</code>.
@@ -17,8 +17,10 @@ package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.BaseEntity;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
@@ -51,6 +53,25 @@ public interface PetRepository {
      */
     Pet findById(int id) throws DataAccessException;
 
+    /**
+     * Retrieve a <code>Pet</code> from the data store by id, with its type, the id of its owner and the given
+     * associations only.
+     *
+     * @param id the id to search for
+     * @param associations the associations to load; {@link Association#VISITS} is the only one a pet has
+     * @return the <code>Pet</code> if found
+     * @throws org.springframework.dao.DataRetrievalFailureException if not found
+     */
+    Pet findById(int id, Set<Association> associations) throws DataAccessException;
+
+    /**
+     * Retrieve the ids of the owners of the given <code>Pet</code>s from the data store, in a single query.
+     *
+     * @param petIds the ids of the pets, which must not be empty
+     * @return the distinct ids of their owners; ids of pets that are not found are left out
+     */
+    Set<Integer> findOwnerIdsByPetIds(Collection<Integer> petIds) throws DataAccessException;
+
     /**
      * Save a <code>Pet</code> to the data store, either inserting or updating it.
      *
@@ -58,6 +79,15 @@ public interface PetRepository {
      * @see BaseEntity#isNew
      */
     void save(Pet pet) throws DataAccessException;
+
+    /**
+     * Save several <code>Pet</code>s to the data store at once, inserting the new ones and updating the others; the
+     * writes are sent in batches rather than one by one.
+     *
+     * @param pets the <code>Pet</code>s to save
+     * @see BaseEntity#isNew
+     */
+    void saveAll(Collection<Pet> pets) throws DataAccessException;
     
     /**
      * Retrieve <code>Pet</code>s from the data store, returning all owners 
@@ -67,6 +97,16 @@ public interface PetRepository {
      */
 	Collection<Pet> findAll() throws DataAccessException;
 
+    /**
+     * Retrieve one keyset page of <code>Pet</code>s from the data store, ordered by id.
+     *
+     * @param afterId only pets with a greater id are returned
+     * @param limit the maximum number of pets returned
+     * @param associations the associations to load with the pets, besides their types and the ids of their owners
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Pet</code>s
+     */
+    Collection<Pet> findAll(int afterId, int limit, Set<Association> associations) throws DataAccessException;
+
     /**
      * Delete an <code>Pet</code> to the data store by <code>Pet</code>.
      *
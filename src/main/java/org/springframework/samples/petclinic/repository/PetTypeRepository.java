@@ -34,6 +34,8 @@ public interface PetTypeRepository {
 
 	Collection<PetType> findAll() throws DataAccessException;
 
+	Collection<PetType> findAll(int afterId, int limit) throws DataAccessException;
+
 	void save(PetType petType) throws DataAccessException;
 
 	void delete(PetType petType) throws DataAccessException;
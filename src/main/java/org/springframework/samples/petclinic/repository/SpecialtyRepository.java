@@ -36,6 +36,8 @@ public interface SpecialtyRepository {
 
     Collection<Specialty> findAll() throws DataAccessException;
 
+    Collection<Specialty> findAll(int afterId, int limit) throws DataAccessException;
+
 	void save(Specialty specialty) throws DataAccessException;
 
 	void delete(Specialty specialty) throws DataAccessException;
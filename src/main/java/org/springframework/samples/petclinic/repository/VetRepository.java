@@ -38,6 +38,15 @@ public interface VetRepository {
      * @return a <code>Collection</code> of <code>Vet</code>s
      */
     Collection<Vet> findAll() throws DataAccessException;
+
+    /**
+     * Retrieve one keyset page of <code>Vet</code>s from the data store, ordered by id.
+     *
+     * @param afterId only vets with a greater id are returned
+     * @param limit the maximum number of vets returned
+     * @return a <code>Collection</code> of at most <code>limit</code> <code>Vet</code>s
+     */
+    Collection<Vet> findAll(int afterId, int limit) throws DataAccessException;
     
 	Vet findById(int id) throws DataAccessException;
 
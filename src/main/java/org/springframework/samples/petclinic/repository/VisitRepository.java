@@ -17,6 +17,7 @@ package org.springframework.samples.petclinic.repository;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.BaseEntity;
@@ -42,12 +43,32 @@ public interface VisitRepository {
      */
     void save(Visit visit) throws DataAccessException;
 
+    /**
+     * Save several <code>Visit</code>s to the data store at once, inserting the new ones and updating the others; the
+     * writes are sent in batches rather than one by one.
+     *
+     * @param visits the <code>Visit</code>s to save
+     * @see BaseEntity#isNew
+     */
+    void saveAll(Collection<Visit> visits) throws DataAccessException;
+
     List<Visit> findByPetId(Integer petId);
     
 	Visit findById(int id) throws DataAccessException;
 	
 	Collection<Visit> findAll() throws DataAccessException;
 
+	Collection<Visit> findAll(int afterId, int limit) throws DataAccessException;
+
+    /**
+     * Pass every <code>Visit</code> in the data store, with its pet, to the action in order of id, reading them from a
+     * forward-only cursor. Visits already passed on are not retained, so memory use does not grow with the number of
+     * visits; the call must run within a transaction.
+     *
+     * @param action receives each <code>Visit</code> in turn and must not keep a reference to it
+     */
+    void streamAll(Consumer<? super Visit> action) throws DataAccessException;
+
 	void delete(Visit visit) throws DataAccessException;
 
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * Minimal open-addressing hash map from primitive <code>int</code> keys to non-null values, used to de-duplicate
+ * entities by id while a result set is read without boxing every id into an {@link Integer}.
+ * <p>
+ * Keys live in a plain <code>int[]</code> probed linearly; a <code>null</code> value marks an empty slot. The table
+ * doubles once it is half full. Entries cannot be removed one by one, only {@link #clear() all at once}.
+ */
+final class IntObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] keys;
+
+    private Object[] values;
+
+    private int size;
+
+    IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    IntObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new Object[capacity];
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int key) {
+        int mask = this.keys.length - 1;
+        for (int slot = hash(key) & mask; this.values[slot] != null; slot = (slot + 1) & mask) {
+            if (this.keys[slot] == key) {
+                return (V) this.values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates the value with the key, replacing any previous value.
+     */
+    void put(int key, V value) {
+        Assert.notNull(value, "Value must not be null");
+        int mask = this.keys.length - 1;
+        int slot = hash(key) & mask;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                this.values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        if (++this.size * 2 > this.keys.length) {
+            resize();
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all entries, keeping the current capacity.
+     */
+    void clear() {
+        if (this.size > 0) {
+            Arrays.fill(this.values, null);
+            this.size = 0;
+        }
+    }
+
+    private void resize() {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new int[oldKeys.length * 2];
+        this.values = new Object[oldValues.length * 2];
+        int mask = this.keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (this.values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads sequential database ids over the table (Fibonacci hashing).
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * {@link ResultSetExtractor} assembling object graphs of any depth from a single joined result set, in one pass.
+ * <p>
+ * The graph is described as a tree of {@link Node nodes}, each identified by an integer id column and mapped by a
+ * {@link RowMapper}. For every row each node reads its id; a <code>NULL</code> id (outer join without a match) skips
+ * the node and its descendants. Entities are de-duplicated per node through an {@link IntObjectMap}, so an entity
+ * repeated over many rows is mapped once and every parent sees the same instance. A child node is linked to its
+ * parent in one of three ways:
+ * <ul>
+ * <li>{@link Node#children children}: one-to-many, each child belongs to one parent and is added when first read;</li>
+ * <li>{@link Node#reference reference}: many-to-one, the shared instance is set when the parent is first read;</li>
+ * <li>{@link Node#sharedChildren shared children}: many-to-many, the shared instance is added on every row it appears
+ * in, so the join must not repeat a parent/child pair.</li>
+ * </ul>
+ * The extractor holds no per-query state and can be reused across queries and threads. {@link #streaming} adapts it
+ * to results too large to be held in memory.
+ *
+ * @param <R> the type of the root entities returned, in the order of their first row
+ */
+class JdbcAggregateExtractor<R> implements ResultSetExtractor<List<R>> {
+
+    private final List<Node<?>> nodes = new ArrayList<>();
+
+    private final Node<R> root;
+
+    JdbcAggregateExtractor(String idColumn, RowMapper<R> rowMapper) {
+        this.root = new Node<>(this.nodes, null, Link.ROOT, idColumn, rowMapper, null);
+    }
+
+    /**
+     * Returns the root node, to which the nested nodes are attached.
+     */
+    Node<R> root() {
+        return this.root;
+    }
+
+    @Override
+    public List<R> extractData(ResultSet rs) throws SQLException {
+        List<R> roots = new ArrayList<>();
+        extract(rs, roots::add, false);
+        return roots;
+    }
+
+    /**
+     * Returns an extractor that hands each root entity to the action as soon as its last row has been read, and then
+     * forgets it together with its descendants, so memory use is bounded by the largest aggregate rather than by the
+     * size of the result. The rows of each root must be contiguous, e.g. ordered by the root id, and entities are
+     * shared only within one aggregate.
+     */
+    ResultSetExtractor<Void> streaming(Consumer<? super R> action) {
+        return rs -> {
+            extract(rs, action, true);
+            return null;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void extract(ResultSet rs, Consumer<? super R> rootAction, boolean streaming) throws SQLException {
+        int count = this.nodes.size();
+        Node[] nodes = this.nodes.toArray(new Node[count]);
+        IntObjectMap<Object>[] seen = new IntObjectMap[count];
+        for (int i = 0; i < count; i++) {
+            seen[i] = new IntObjectMap<>();
+        }
+        Object[] current = new Object[count];
+        boolean[] created = new boolean[count];
+        R pending = null;
+        int pendingId = 0;
+        int rowNum = 0;
+        while (rs.next()) {
+            for (int i = 0; i < count; i++) {
+                Node node = nodes[i];
+                current[i] = null;
+                created[i] = false;
+                Object parent = null;
+                if (node.parent != null) {
+                    parent = current[node.parent.index];
+                    if (parent == null) {
+                        continue;
+                    }
+                }
+                int id = rs.getInt(node.idColumn);
+                if (rs.wasNull()) {
+                    continue;
+                }
+                if (streaming && node.link == Link.ROOT && pending != null && id != pendingId) {
+                    rootAction.accept(pending);
+                    pending = null;
+                    for (IntObjectMap<Object> map : seen) {
+                        map.clear();
+                    }
+                }
+                Object entity = seen[i].get(id);
+                if (entity == null) {
+                    entity = node.rowMapper.mapRow(rs, rowNum);
+                    seen[i].put(id, entity);
+                    created[i] = true;
+                }
+                current[i] = entity;
+                switch (node.link) {
+                    case ROOT -> {
+                        if (created[i] && streaming) {
+                            pending = (R) entity;
+                            pendingId = id;
+                        } else if (created[i]) {
+                            rootAction.accept((R) entity);
+                        }
+                    }
+                    case CHILDREN -> {
+                        if (created[i]) {
+                            node.linker.accept(parent, entity);
+                        }
+                    }
+                    case REFERENCE -> {
+                        if (created[node.parent.index]) {
+                            node.linker.accept(parent, entity);
+                        }
+                    }
+                    case SHARED_CHILDREN -> node.linker.accept(parent, entity);
+                }
+            }
+            rowNum++;
+        }
+        if (pending != null) {
+            rootAction.accept(pending);
+        }
+    }
+
+    private enum Link {
+        ROOT, CHILDREN, REFERENCE, SHARED_CHILDREN
+    }
+
+    /**
+     * One level of the graph, mapping entities of type <code>T</code>.
+     */
+    static final class Node<T> {
+
+        private final List<Node<?>> nodes;
+
+        private final int index;
+
+        private final Node<?> parent;
+
+        private final Link link;
+
+        private final String idColumn;
+
+        private final RowMapper<T> rowMapper;
+
+        private final BiConsumer<Object, T> linker;
+
+        @SuppressWarnings("unchecked")
+        private <P> Node(List<Node<?>> nodes, Node<P> parent, Link link, String idColumn, RowMapper<T> rowMapper,
+                         BiConsumer<? super P, ? super T> linker) {
+            this.nodes = nodes;
+            this.index = nodes.size();
+            this.parent = parent;
+            this.link = link;
+            this.idColumn = idColumn;
+            this.rowMapper = rowMapper;
+            this.linker = (BiConsumer<Object, T>) linker;
+            nodes.add(this);
+        }
+
+        /**
+         * Adds a one-to-many level whose entities each belong to a single entity of this level.
+         */
+        <C> Node<C> children(String idColumn, RowMapper<C> rowMapper, BiConsumer<? super T, ? super C> adder) {
+            return new Node<>(this.nodes, this, Link.CHILDREN, idColumn, rowMapper, adder);
+        }
+
+        /**
+         * Adds a many-to-one level whose entities are shared by the entities of this level.
+         */
+        <C> Node<C> reference(String idColumn, RowMapper<C> rowMapper, BiConsumer<? super T, ? super C> setter) {
+            return new Node<>(this.nodes, this, Link.REFERENCE, idColumn, rowMapper, setter);
+        }
+
+        /**
+         * Adds a many-to-many level whose entities are shared by the entities of this level.
+         */
+        <C> Node<C> sharedChildren(String idColumn, RowMapper<C> rowMapper, BiConsumer<? super T, ? super C> adder) {
+            return new Node<>(this.nodes, this, Link.SHARED_CHILDREN, idColumn, rowMapper, adder);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.jdbc.support.incrementer.AbstractDataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.HsqlSequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.PostgresSequenceMaxValueIncrementer;
+
+/**
+ * Hands out the IDs of new rows of one table before they are inserted, so that inserts need not read back a
+ * generated key and many of them can be sent in one JDBC batch.
+ * <p>
+ * IDs are reserved in blocks of {@link #BLOCK_SIZE} from the <code>&lt;table&gt;_seq</code> sequence that the JPA
+ * profiles use as well: each value drawn from it is the first ID of a block, and the sequence itself steps by the
+ * block size (see the <code>initDB.sql</code> scripts). MySQL has no sequences, so there the next value is kept in a
+ * single-row table and advanced on a connection of its own, as a rollback must not hand a reserved block out twice.
+ * IDs of a block that is not used up are lost when the application stops.
+ */
+class JdbcIdAllocator {
+
+    /**
+     * Number of IDs reserved at a time; must match the increment of the sequences.
+     */
+    static final int BLOCK_SIZE = 50;
+
+    private final DataFieldMaxValueIncrementer blocks;
+
+    private int next;
+
+    private int end;
+
+    JdbcIdAllocator(DataFieldMaxValueIncrementer blocks) {
+        this.blocks = blocks;
+    }
+
+    /**
+     * Creates an allocator for the IDs of the given table, reading the sequence in the dialect of the database
+     * behind the data source.
+     */
+    static JdbcIdAllocator forTable(DataSource dataSource, String table) {
+        String sequence = table + "_seq";
+        String database;
+        try {
+            database = JdbcUtils.commonDatabaseName(
+                JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName));
+        } catch (MetaDataAccessException ex) {
+            throw new DataAccessResourceFailureException("Could not determine the database of " + dataSource, ex);
+        }
+        if (database.startsWith("HSQL")) {
+            return new JdbcIdAllocator(new HsqlSequenceMaxValueIncrementer(dataSource, sequence));
+        }
+        if (database.equals("PostgreSQL")) {
+            return new JdbcIdAllocator(new PostgresSequenceMaxValueIncrementer(dataSource, sequence));
+        }
+        if (database.equals("MySQL") || database.equals("MariaDB")) {
+            return new JdbcIdAllocator(new MySqlSequenceTable(dataSource, sequence));
+        }
+        throw new IllegalStateException("No ID sequence support for database " + database);
+    }
+
+    synchronized int nextId() throws DataAccessException {
+        if (this.next == this.end) {
+            this.next = this.blocks.nextIntValue();
+            this.end = this.next + BLOCK_SIZE;
+        }
+        return this.next++;
+    }
+
+    /**
+     * The table Hibernate emulates a sequence with on MySQL: a single <code>next_val</code> row holding the first ID
+     * of the next block.
+     */
+    private static class MySqlSequenceTable extends AbstractDataFieldMaxValueIncrementer {
+
+        MySqlSequenceTable(DataSource dataSource, String table) {
+            super(dataSource, table);
+        }
+
+        @Override
+        protected long getNextKey() throws DataAccessException {
+            // not the connection of the current transaction: the reserved block must survive its rollback
+            try (Connection con = getDataSource().getConnection(); Statement stmt = con.createStatement()) {
+                con.setAutoCommit(true);
+                stmt.executeUpdate("UPDATE " + getIncrementerName() +
+                    " SET next_val = LAST_INSERT_ID(next_val + " + BLOCK_SIZE + ")");
+                try (ResultSet rs = stmt.executeQuery("SELECT LAST_INSERT_ID()")) {
+                    rs.next();
+                    return rs.getLong(1) - BLOCK_SIZE;
+                }
+            } catch (SQLException ex) {
+                throw new DataAccessResourceFailureException("Could not reserve IDs from " + getIncrementerName(), ex);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+
+/**
+ * {@link RowMapper} implementation mapping the columns <code>id, name</code>, in this order, to a
+ * {@link NamedEntity} such as {@link PetType} or {@link Specialty}. Columns are read by index.
+ */
+class JdbcNamedEntityRowMapper<T extends NamedEntity> implements RowMapper<T> {
+
+    private final Supplier<T> factory;
+
+    JdbcNamedEntityRowMapper(Supplier<T> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+        T entity = this.factory.get();
+        entity.setId(rs.getInt(1));
+        entity.setName(rs.getString(2));
+        return entity;
+    }
+}
@@ -16,28 +16,27 @@
 package org.springframework.samples.petclinic.repository.jdbc;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
-import org.springframework.samples.petclinic.util.EntityUtils;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
 import jakarta.transaction.Transactional;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * A simple JDBC-based implementation of the {@link OwnerRepository} interface.
@@ -55,142 +54,234 @@ import java.util.Map;
 @Profile("jdbc")
 public class JdbcOwnerRepositoryImpl implements OwnerRepository {
 
-    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private static final String OWNERS_WITH_PETS_AND_VISITS = ownersWith("owners", true, true);
 
-    private SimpleJdbcInsert insertOwner;
+    private final JdbcIdAllocator ownerIds;
 
-    @Autowired
-    public JdbcOwnerRepositoryImpl(DataSource dataSource) {
+    private final JdbcAggregateExtractor<Owner> ownerExtractor;
+
+    /**
+     * The queries of the owners by id and of their pages, for each depth they may be read to.
+     */
+    private final Map<Depth, Selects> selects = new EnumMap<>(Depth.class);
+
+    private final JdbcStatement selectByLastName;
+
+    private final JdbcStatement selectAll;
+
+    private final JdbcStatement streamAll;
+
+    private final JdbcStatement insertOwner;
 
-        this.insertOwner = new SimpleJdbcInsert(dataSource)
-            .withTableName("owners")
-            .usingGeneratedKeyColumns("id");
+    private final JdbcStatement updateOwner;
 
-        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    private final JdbcStatement deleteVisitsOfOwner;
 
+    private final JdbcStatement deletePetsOfOwner;
+
+    private final JdbcStatement deleteOwner;
+
+    @Autowired
+    public JdbcOwnerRepositoryImpl(DataSource dataSource,
+                                   @Value("${petclinic.streaming.fetch-size:500}") int streamingFetchSize) {
+
+        this.ownerIds = JdbcIdAllocator.forTable(dataSource, "owners");
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        this.selectByLastName = new JdbcStatement(jdbcTemplate,
+            OWNERS_WITH_PETS_AND_VISITS + " WHERE owners.last_name like :lastName");
+        this.selectAll = new JdbcStatement(jdbcTemplate, OWNERS_WITH_PETS_AND_VISITS);
+        for (Depth depth : Depth.values()) {
+            this.selects.put(depth, new Selects(jdbcTemplate, depth));
+        }
+        this.ownerExtractor = this.selects.get(Depth.VISITS).extractor;
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        streamingJdbcTemplate.setFetchSize(streamingFetchSize);
+        this.streamAll = new JdbcStatement(streamingJdbcTemplate, OWNERS_WITH_PETS_AND_VISITS + " ORDER BY owners.id");
+        this.insertOwner = new JdbcStatement(jdbcTemplate,
+            "INSERT INTO owners (id, first_name, last_name, address, city, telephone) " +
+                "VALUES (:id, :firstName, :lastName, :address, :city, :telephone)");
+        this.updateOwner = new JdbcStatement(jdbcTemplate,
+            "UPDATE owners SET first_name=:firstName, last_name=:lastName, address=:address, " +
+                "city=:city, telephone=:telephone WHERE id=:id");
+        this.deleteVisitsOfOwner = new JdbcStatement(jdbcTemplate,
+            "DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE owner_id=:id)");
+        this.deletePetsOfOwner = new JdbcStatement(jdbcTemplate, "DELETE FROM pets WHERE owner_id=:id");
+        this.deleteOwner = new JdbcStatement(jdbcTemplate, "DELETE FROM owners WHERE id=:id");
     }
 
 
     /**
      * Loads {@link Owner Owners} from the data store by last name, returning all owners whose last name <i>starts</i> with
-     * the given name; also loads the {@link Pet Pets} and {@link Visit Visits} for the corresponding owners, if not
-     * already loaded.
+     * the given name; also loads the {@link Pet Pets} and {@link Visit Visits} for the corresponding owners, in the
+     * same query.
      */
     @Override
     public Collection<Owner> findByLastName(String lastName) throws DataAccessException {
-        Map<String, Object> params = new HashMap<>();
-        params.put("lastName", lastName + "%");
-        List<Owner> owners = this.namedParameterJdbcTemplate.query(
-            "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE last_name like :lastName",
-            params,
-            BeanPropertyRowMapper.newInstance(Owner.class)
-        );
-        loadOwnersPetsAndVisits(owners);
-        return owners;
+        return this.selectByLastName.query(this.ownerExtractor, lastName + "%");
     }
 
     /**
      * Loads the {@link Owner} with the supplied <code>id</code>; also loads the {@link Pet Pets} and {@link Visit Visits}
-     * for the corresponding owner, if not already loaded.
+     * for the corresponding owner, in the same query.
      */
     @Override
     public Owner findById(int id) throws DataAccessException {
-        Owner owner;
-        try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            owner = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE id= :id",
-                params,
-                BeanPropertyRowMapper.newInstance(Owner.class)
-            );
-        } catch (EmptyResultDataAccessException ex) {
-            throw new ObjectRetrievalFailureException(Owner.class, id);
-        }
-        loadPetsAndVisits(owner);
-        return owner;
+        return findById(id, Association.ALL);
     }
 
-    public void loadPetsAndVisits(final Owner owner) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", owner.getId());
-        final List<JdbcPet> pets = this.namedParameterJdbcTemplate.query(
-            "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id, visits.id as visit_id, visit_date, description, visits.pet_id as visits_pet_id FROM pets LEFT OUTER JOIN visits ON pets.id = visits.pet_id WHERE owner_id=:id ORDER BY pets.id",
-            params,
-            new JdbcPetVisitExtractor()
-        );
-        Collection<PetType> petTypes = getPetTypes();
-        for (JdbcPet pet : pets) {
-            pet.setType(EntityUtils.getById(petTypes, PetType.class, pet.getTypeId()));
-            owner.addPet(pet);
+    /**
+     * Loads the {@link Owner} with the supplied <code>id</code>, joined with those of its {@link Pet Pets} and
+     * {@link Visit Visits} that the associations ask for.
+     */
+    @Override
+    public Owner findById(int id, Set<Association> associations) throws DataAccessException {
+        Selects selects = this.selects.get(Depth.of(associations));
+        List<Owner> owners = selects.byId.query(selects.extractor, id);
+        if (owners.isEmpty()) {
+            throw new ObjectRetrievalFailureException(Owner.class, id);
         }
+        return owners.get(0);
     }
 
     @Override
     public void save(Owner owner) throws DataAccessException {
-        BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(owner);
         if (owner.isNew()) {
-            Number newKey = this.insertOwner.executeAndReturnKey(parameterSource);
-            owner.setId(newKey.intValue());
+            int id = this.ownerIds.nextId();
+            this.insertOwner.update(id, owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+                owner.getCity(), owner.getTelephone());
+            owner.setId(id);
         } else {
-            this.namedParameterJdbcTemplate.update(
-                "UPDATE owners SET first_name=:firstName, last_name=:lastName, address=:address, " +
-                    "city=:city, telephone=:telephone WHERE id=:id",
-                parameterSource);
+            this.updateOwner.update(owner.getFirstName(), owner.getLastName(), owner.getAddress(), owner.getCity(),
+                owner.getTelephone(), owner.getId());
         }
     }
 
-    public Collection<PetType> getPetTypes() throws DataAccessException {
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM types ORDER BY name", new HashMap<String, Object>(),
-            BeanPropertyRowMapper.newInstance(PetType.class));
-    }
+	/**
+	 * Loads all {@link Owner Owners} with their {@link Pet Pets} and {@link Visit Visits} from a single joined query.
+	 */
+	@Override
+	public Collection<Owner> findAll() throws DataAccessException {
+	    return this.selectAll.query(this.ownerExtractor);
+	}
 
-    /**
-     * Loads the {@link Pet} and {@link Visit} data for the supplied {@link List} of {@link Owner Owners}.
-     *
-     * @param owners the list of owners for whom the pet and visit data should be loaded
-     * @see #loadPetsAndVisits(Owner)
-     */
-    private void loadOwnersPetsAndVisits(List<Owner> owners) {
-        for (Owner owner : owners) {
-            loadPetsAndVisits(owner);
-        }
-    }
+	@Override
+	public Collection<Owner> findAll(int afterId, int limit, Set<Association> associations)
+		throws DataAccessException {
+		Selects selects = this.selects.get(Depth.of(associations));
+		return selects.page.query(selects.extractor, afterId, limit);
+	}
 
 	@Override
-	public Collection<Owner> findAll() throws DataAccessException {
-		List<Owner> owners = this.namedParameterJdbcTemplate.query(
-	            "SELECT id, first_name, last_name, address, city, telephone FROM owners",
-	            new HashMap<String, Object>(),
-	            BeanPropertyRowMapper.newInstance(Owner.class));
-		for (Owner owner : owners) {
-            loadPetsAndVisits(owner);
-        }
-	    return owners;
+	public Collection<Owner> findByLastName(String lastName, int afterId, int limit, Set<Association> associations)
+		throws DataAccessException {
+		Selects selects = this.selects.get(Depth.of(associations));
+		return selects.byLastNamePage.query(selects.extractor, lastName + "%", afterId, limit);
+	}
+
+	/**
+	 * Streams the joined owners, pets and visits ordered by owner, handing each owner on once its last row is read.
+	 */
+	@Override
+	public void streamAll(Consumer<? super Owner> action) throws DataAccessException {
+		this.streamAll.query(this.ownerExtractor.streaming(action));
 	}
 
 	@Override
 	@Transactional
 	public void delete(Owner owner) throws DataAccessException {
-		Map<String, Object> owner_params = new HashMap<>();
-		owner_params.put("id", owner.getId());
-        List<Pet> pets = owner.getPets();
-        // cascade delete pets
-        for (Pet pet : pets){
-        	Map<String, Object> pet_params = new HashMap<>();
-        	pet_params.put("id", pet.getId());
-        	// cascade delete visits
-        	List<Visit> visits = pet.getVisits();
-            for (Visit visit : visits){
-            	Map<String, Object> visit_params = new HashMap<>();
-            	visit_params.put("id", visit.getId());
-            	this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", visit_params);
+		// cascade delete visits and pets with set-based statements
+		this.deleteVisitsOfOwner.update(owner.getId());
+		this.deletePetsOfOwner.update(owner.getId());
+		this.deleteOwner.update(owner.getId());
+	}
+
+    /**
+     * Owners, joined with their pets and the pet types, and with the visits of the pets as well, as read by
+     * {@link #extractor}; <code>owners</code> is either the table itself or a derived table selecting some of its rows.
+     */
+    private static String ownersWith(String owners, boolean pets, boolean visits) {
+        StringBuilder sql = new StringBuilder(
+            "SELECT owners.id, owners.first_name, owners.last_name, owners.address, owners.city, owners.telephone");
+        if (pets) {
+            sql.append(", pets.id as pets_id, pets.name, pets.birth_date, pets.type_id, pets.owner_id, " +
+                "types.name as type_name");
+        }
+        if (visits) {
+            sql.append(", visits.id as visit_id, visits.visit_date, visits.description");
+        }
+        sql.append(" FROM ").append(owners).append(" owners");
+        if (pets) {
+            sql.append(" LEFT OUTER JOIN pets ON pets.owner_id = owners.id " +
+                "LEFT OUTER JOIN types ON pets.type_id = types.id");
+        }
+        if (visits) {
+            sql.append(" LEFT OUTER JOIN visits ON visits.pet_id = pets.id");
+        }
+        return sql.toString();
+    }
+
+    private static JdbcAggregateExtractor<Owner> extractor(boolean pets, boolean visits) {
+        JdbcAggregateExtractor<Owner> extractor = new JdbcAggregateExtractor<>("id", new JdbcOwnerRowMapper());
+        if (pets) {
+            JdbcAggregateExtractor.Node<JdbcPet> pet =
+                extractor.root().children("pets_id", new JdbcPetRowMapper(), Owner::addPet);
+            pet.reference("type_id", (rs, rowNum) -> {
+                PetType petType = new PetType();
+                petType.setId(rs.getInt("type_id"));
+                petType.setName(rs.getString("type_name"));
+                return petType;
+            }, Pet::setType);
+            if (visits) {
+                pet.children("visit_id", new JdbcVisitRowMapper(), Pet::addVisit);
             }
-            this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", pet_params);
         }
-        this.namedParameterJdbcTemplate.update("DELETE FROM owners WHERE id=:id", owner_params);
-	}
+        return extractor;
+    }
+
+    /**
+     * How far the owners are joined: not at all, to their pets and pet types, or to the visits of the pets as well.
+     */
+    private enum Depth {
+
+        OWNERS, PETS, VISITS;
+
+        static Depth of(Set<Association> associations) {
+            if (!associations.contains(Association.PETS)) {
+                return OWNERS;
+            }
+            return associations.contains(Association.VISITS) ? VISITS : PETS;
+        }
+
+    }
 
+    private static final class Selects {
+
+        private final JdbcAggregateExtractor<Owner> extractor;
+
+        private final JdbcStatement byId;
+
+        private final JdbcStatement page;
+
+        private final JdbcStatement byLastNamePage;
+
+        /**
+         * Pages of owners are cut on the <code>owners</code> table before the join, so the limit counts owners rather
+         * than joined rows.
+         */
+        Selects(JdbcTemplate jdbcTemplate, Depth depth) {
+            boolean pets = depth != Depth.OWNERS;
+            boolean visits = depth == Depth.VISITS;
+            this.extractor = extractor(pets, visits);
+            this.byId = new JdbcStatement(jdbcTemplate, ownersWith("owners", pets, visits) + " WHERE owners.id= :id");
+            this.page = new JdbcStatement(jdbcTemplate, ownersWith(
+                "(SELECT * FROM owners WHERE id > :afterId ORDER BY id LIMIT :limit)", pets, visits) +
+                " ORDER BY owners.id");
+            this.byLastNamePage = new JdbcStatement(jdbcTemplate, ownersWith(
+                "(SELECT * FROM owners WHERE last_name like :lastName AND id > :afterId ORDER BY id LIMIT :limit)",
+                pets, visits) + " ORDER BY owners.id");
+        }
+
+    }
 
 }
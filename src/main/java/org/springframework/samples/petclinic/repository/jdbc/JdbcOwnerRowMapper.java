@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.samples.petclinic.model.Owner;
+
+/**
+ * {@link RowMapper} implementation mapping the columns <code>id, first_name, last_name, address, city,
+ * telephone</code>, in this order, to an {@link Owner}. Columns are read by index, so queries using this mapper must
+ * select them in exactly that order.
+ */
+class JdbcOwnerRowMapper implements RowMapper<Owner> {
+
+    @Override
+    public Owner mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Owner owner = new Owner();
+        owner.setId(rs.getInt(1));
+        owner.setFirstName(rs.getString(2));
+        owner.setLastName(rs.getString(3));
+        owner.setAddress(rs.getString(4));
+        owner.setCity(rs.getString(5));
+        owner.setTelephone(rs.getString(6));
+        return owner;
+    }
+}
@@ -17,9 +17,10 @@ package org.springframework.samples.petclinic.repository.jdbc;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
@@ -27,16 +28,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Visit;
-import org.springframework.samples.petclinic.repository.OwnerRepository;
 import org.springframework.samples.petclinic.repository.PetRepository;
 import org.springframework.samples.petclinic.repository.VisitRepository;
 import org.springframework.samples.petclinic.util.EntityUtils;
@@ -55,94 +54,187 @@ import org.springframework.stereotype.Repository;
 @Profile("jdbc")
 public class JdbcPetRepositoryImpl implements PetRepository {
 
-    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final JdbcIdAllocator petIds;
 
-    private SimpleJdbcInsert insertPet;
+    private VisitRepository visitRepository;
 
-    private OwnerRepository ownerRepository;
+    private final JdbcQuery<PetType> selectPetTypes;
 
-    private VisitRepository visitRepository;
+    private final JdbcQuery<JdbcPet> selectPetWithTypeAndOwner;
+
+    private final JdbcQuery<Visit> selectVisitsOfPet;
+
+    private final JdbcQuery<JdbcPet> selectAllPets;
+
+    private final JdbcQuery<Owner> selectAllOwners;
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final JdbcAggregateExtractor<JdbcPet> petExtractor;
+
+    private final JdbcAggregateExtractor<JdbcPet> petWithVisitsExtractor;
+
+    private final JdbcStatement selectPage;
+
+    private final JdbcStatement selectPageWithVisits;
+
+    private final JdbcStatement insertPet;
+
+    private final JdbcStatement updatePet;
+
+    private final JdbcStatement deleteVisitsOfPet;
+
+    private final JdbcStatement deletePet;
 
 
     @Autowired
     public JdbcPetRepositoryImpl(DataSource dataSource,
-    		OwnerRepository ownerRepository,
     		VisitRepository visitRepository) {
-        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
-
-        this.insertPet = new SimpleJdbcInsert(dataSource)
-            .withTableName("pets")
-            .usingGeneratedKeyColumns("id");
+        this.petIds = JdbcIdAllocator.forTable(dataSource, "pets");
 
-        this.ownerRepository = ownerRepository;
         this.visitRepository = visitRepository;
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.selectPetTypes = new JdbcQuery<>(jdbcTemplate,
+            "SELECT id, name FROM types ORDER BY name", new JdbcNamedEntityRowMapper<>(PetType::new));
+        this.selectPetWithTypeAndOwner = new JdbcQuery<>(jdbcTemplate,
+            "SELECT pets.id as pets_id, pets.name, birth_date, type_id, owner_id, types.name as type_name, " +
+                "owners.first_name, owners.last_name, owners.address, owners.city, owners.telephone " +
+                "FROM pets JOIN types ON pets.type_id = types.id JOIN owners ON pets.owner_id = owners.id " +
+                "WHERE pets.id=:id",
+            (rs, rowNum) -> {
+                JdbcPet jdbcPet = new JdbcPetRowMapper().mapRow(rs, rowNum);
+                PetType petType = new PetType();
+                petType.setId(jdbcPet.getTypeId());
+                petType.setName(rs.getString("type_name"));
+                jdbcPet.setType(petType);
+                Owner owner = new Owner();
+                owner.setId(jdbcPet.getOwnerId());
+                owner.setFirstName(rs.getString("first_name"));
+                owner.setLastName(rs.getString("last_name"));
+                owner.setAddress(rs.getString("address"));
+                owner.setCity(rs.getString("city"));
+                owner.setTelephone(rs.getString("telephone"));
+                jdbcPet.setOwner(owner);
+                return jdbcPet;
+            });
+        this.selectVisitsOfPet = new JdbcQuery<>(jdbcTemplate,
+            "SELECT id as visit_id, visit_date, description FROM visits WHERE pet_id=:id", new JdbcVisitRowMapper());
+        this.selectAllPets = new JdbcQuery<>(jdbcTemplate,
+            "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id FROM pets", new JdbcPetRowMapper());
+        this.selectAllOwners = new JdbcQuery<>(jdbcTemplate,
+            "SELECT id, first_name, last_name, address, city, telephone FROM owners ORDER BY last_name",
+            new JdbcOwnerRowMapper());
+
+        this.petExtractor = petExtractor(false);
+        this.petWithVisitsExtractor = petExtractor(true);
+        this.selectPage = new JdbcStatement(jdbcTemplate, petsPage(false));
+        this.selectPageWithVisits = new JdbcStatement(jdbcTemplate, petsPage(true));
+        this.insertPet = new JdbcStatement(jdbcTemplate,
+            "INSERT INTO pets (id, name, birth_date, type_id, owner_id) " +
+                "VALUES (:id, :name, :birth_date, :type_id, :owner_id)");
+        this.updatePet = new JdbcStatement(jdbcTemplate,
+            "UPDATE pets SET name=:name, birth_date=:birth_date, type_id=:type_id, owner_id=:owner_id WHERE id=:id");
+        this.deleteVisitsOfPet = new JdbcStatement(jdbcTemplate, "DELETE FROM visits WHERE pet_id=:id");
+        this.deletePet = new JdbcStatement(jdbcTemplate, "DELETE FROM pets WHERE id=:id");
     }
 
     @Override
     public List<PetType> findPetTypes() throws DataAccessException {
-        Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM types ORDER BY name",
-            params,
-            BeanPropertyRowMapper.newInstance(PetType.class));
+        return this.selectPetTypes.list();
     }
 
+    /**
+     * Loads the {@link Pet} with the supplied <code>id</code> together with its {@link PetType}, the row of its
+     * {@link Owner} and its {@link Visit Visits}. The other pets of the owner are not loaded, so the cost of this
+     * lookup does not depend on how many pets the owner has.
+     */
     @Override
     public Pet findById(int id) throws DataAccessException {
-        Integer ownerId;
+        return findById(id, Association.ALL);
+    }
+
+    /**
+     * Loads the {@link Pet} with the supplied <code>id</code> together with its {@link PetType} and the row of its
+     * {@link Owner}, and its {@link Visit Visits} only if the associations ask for them.
+     */
+    @Override
+    public Pet findById(int id, Set<Association> associations) throws DataAccessException {
+        JdbcPet pet;
         try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            ownerId = this.namedParameterJdbcTemplate.queryForObject("SELECT owner_id FROM pets WHERE id=:id", params, Integer.class);
+            pet = this.selectPetWithTypeAndOwner.single(id);
         } catch (EmptyResultDataAccessException ex) {
             throw new ObjectRetrievalFailureException(Pet.class, id);
         }
-        Owner owner = this.ownerRepository.findById(ownerId);
-        return EntityUtils.getById(owner.getPets(), Pet.class, id);
+        if (!associations.contains(Association.VISITS)) {
+            return pet;
+        }
+        List<Visit> visits = this.selectVisitsOfPet.list(id);
+        for (Visit visit : visits) {
+            pet.addVisit(visit);
+        }
+        return pet;
+    }
+
+    /**
+     * Binds the ids through {@link NamedParameterJdbcTemplate}, which expands the <code>IN</code> list.
+     */
+    @Override
+    public Set<Integer> findOwnerIdsByPetIds(Collection<Integer> petIds) throws DataAccessException {
+        return new HashSet<>(this.namedParameterJdbcTemplate.queryForList(
+            "SELECT DISTINCT owner_id FROM pets WHERE id IN (:ids)", Map.of("ids", petIds), Integer.class));
     }
 
     @Override
     public void save(Pet pet) throws DataAccessException {
         if (pet.isNew()) {
-            Number newKey = this.insertPet.executeAndReturnKey(
-                createPetParameterSource(pet));
-            pet.setId(newKey.intValue());
+            int id = this.petIds.nextId();
+            this.insertPet.update(id, pet.getName(), pet.getBirthDate(), pet.getType().getId(),
+                pet.getOwner().getId());
+            pet.setId(id);
         } else {
-            this.namedParameterJdbcTemplate.update(
-                "UPDATE pets SET name=:name, birth_date=:birth_date, type_id=:type_id, " +
-                    "owner_id=:owner_id WHERE id=:id",
-                createPetParameterSource(pet));
+            this.updatePet.update(pet.getName(), pet.getBirthDate(), pet.getType().getId(), pet.getOwner().getId(),
+                pet.getId());
         }
     }
 
     /**
-     * Creates a {@link MapSqlParameterSource} based on data values from the supplied {@link Pet} instance.
+     * Inserts the new pets with IDs taken from the allocator and updates the others, one JDBC batch each. As with
+     * {@link #save}, the visits of the pets are not written.
      */
-    private MapSqlParameterSource createPetParameterSource(Pet pet) {
-        return new MapSqlParameterSource()
-            .addValue("id", pet.getId())
-            .addValue("name", pet.getName())
-            .addValue("birth_date", pet.getBirthDate())
-            .addValue("type_id", pet.getType().getId())
-            .addValue("owner_id", pet.getOwner().getId());
+    @Override
+    public void saveAll(Collection<Pet> pets) throws DataAccessException {
+        List<Pet> inserted = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Pet pet : pets) {
+            if (pet.isNew()) {
+                inserted.add(pet);
+                inserts.add(new Object[]{this.petIds.nextId(), pet.getName(), pet.getBirthDate(),
+                    pet.getType().getId(), pet.getOwner().getId()});
+            } else {
+                updates.add(new Object[]{pet.getName(), pet.getBirthDate(), pet.getType().getId(),
+                    pet.getOwner().getId(), pet.getId()});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            this.insertPet.batchUpdate(inserts);
+        }
+        if (!updates.isEmpty()) {
+            this.updatePet.batchUpdate(updates);
+        }
+        for (int i = 0; i < inserted.size(); i++) {
+            inserted.get(i).setId((Integer) inserts.get(i)[0]);
+        }
     }
     
 	@Override
 	public Collection<Pet> findAll() throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
 		Collection<Pet> pets = new ArrayList<Pet>();
-		Collection<JdbcPet> jdbcPets = new ArrayList<JdbcPet>();
-		jdbcPets = this.namedParameterJdbcTemplate
-				.query("SELECT pets.id as pets_id, name, birth_date, type_id, owner_id FROM pets",
-				params,
-				new JdbcPetRowMapper());
-		Collection<PetType> petTypes = this.namedParameterJdbcTemplate.query("SELECT id, name FROM types ORDER BY name",
-				new HashMap<String,
-				Object>(), BeanPropertyRowMapper.newInstance(PetType.class));
-		Collection<Owner> owners = this.namedParameterJdbcTemplate.query(
-				"SELECT id, first_name, last_name, address, city, telephone FROM owners ORDER BY last_name",
-				new HashMap<String, Object>(),
-				BeanPropertyRowMapper.newInstance(Owner.class));
+		Collection<JdbcPet> jdbcPets = this.selectAllPets.list();
+		Collection<PetType> petTypes = this.selectPetTypes.list();
+		Collection<Owner> owners = this.selectAllOwners.list();
 		for (JdbcPet jdbcPet : jdbcPets) {
 			jdbcPet.setType(EntityUtils.getById(petTypes, PetType.class, jdbcPet.getTypeId()));
 			jdbcPet.setOwner(EntityUtils.getById(owners, Owner.class, jdbcPet.getOwnerId()));
@@ -152,18 +244,65 @@ public class JdbcPetRepositoryImpl implements PetRepository {
 		return pets;
 	}
 
+	/**
+	 * Loads a page of {@link Pet Pets} together with their {@link PetType}, {@link Owner} and, if the associations ask
+	 * for them, {@link Visit Visits} from a single joined query.
+	 */
+	@Override
+	public Collection<Pet> findAll(int afterId, int limit, Set<Association> associations) throws DataAccessException {
+		if (associations.contains(Association.VISITS)) {
+			return new ArrayList<>(this.selectPageWithVisits.query(this.petWithVisitsExtractor, afterId, limit));
+		}
+		return new ArrayList<>(this.selectPage.query(this.petExtractor, afterId, limit));
+	}
+
 	@Override
 	public void delete(Pet pet) throws DataAccessException {
-		Map<String, Object> pet_params = new HashMap<>();
-		pet_params.put("id", pet.getId());
-		List<Visit> visits = pet.getVisits();
 		// cascade delete visits
-		for (Visit visit : visits) {
-			Map<String, Object> visit_params = new HashMap<>();
-			visit_params.put("id", visit.getId());
-			this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", visit_params);
-		}
-		this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", pet_params);
+		this.deleteVisitsOfPet.update(pet.getId());
+		this.deletePet.update(pet.getId());
 	}
 
+    /**
+     * Pets joined with their types and owners, and with their visits as well if asked for, as read by
+     * {@link #petExtractor}. The page is cut on the pets table before the join, so the limit counts pets rather than
+     * joined rows.
+     */
+    private static String petsPage(boolean visits) {
+        return "SELECT pets.id as pets_id, pets.name, pets.birth_date, pets.type_id, pets.owner_id, " +
+            "types.name as type_name, owners.first_name, owners.last_name, owners.address, owners.city, " +
+            "owners.telephone" + (visits ? ", visits.id as visit_id, visits.visit_date, visits.description" : "") +
+            " FROM (SELECT * FROM pets WHERE id > :afterId ORDER BY id LIMIT :limit) pets " +
+            "JOIN types ON pets.type_id = types.id JOIN owners ON pets.owner_id = owners.id" +
+            (visits ? " LEFT OUTER JOIN visits ON visits.pet_id = pets.id" : "") + " ORDER BY pets.id";
+    }
+
+    /**
+     * Pet types and owners are shared by the pets referencing them.
+     */
+    private static JdbcAggregateExtractor<JdbcPet> petExtractor(boolean visits) {
+        JdbcAggregateExtractor<JdbcPet> extractor = new JdbcAggregateExtractor<>("pets_id", new JdbcPetRowMapper());
+        JdbcAggregateExtractor.Node<JdbcPet> pet = extractor.root();
+        pet.reference("type_id", (rs, rowNum) -> {
+            PetType petType = new PetType();
+            petType.setId(rs.getInt("type_id"));
+            petType.setName(rs.getString("type_name"));
+            return petType;
+        }, Pet::setType);
+        pet.reference("owner_id", (rs, rowNum) -> {
+            Owner owner = new Owner();
+            owner.setId(rs.getInt("owner_id"));
+            owner.setFirstName(rs.getString("first_name"));
+            owner.setLastName(rs.getString("last_name"));
+            owner.setAddress(rs.getString("address"));
+            owner.setCity(rs.getString("city"));
+            owner.setTelephone(rs.getString("telephone"));
+            return owner;
+        }, Pet::setOwner);
+        if (visits) {
+            pet.children("visit_id", new JdbcVisitRowMapper(), Pet::addVisit);
+        }
+        return extractor;
+    }
+
 }
@@ -16,11 +16,7 @@
 
 package org.springframework.samples.petclinic.repository.jdbc;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -28,14 +24,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.orm.ObjectRetrievalFailureException;
-import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
-import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.PetTypeRepository;
 import org.springframework.stereotype.Repository;
 
@@ -48,28 +41,48 @@ import org.springframework.stereotype.Repository;
 @Profile("jdbc")
 public class JdbcPetTypeRepositoryImpl implements PetTypeRepository {
 
-	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
-
 	private SimpleJdbcInsert insertPetType;
 
+	private final JdbcQuery<PetType> selectById;
+
+	private final JdbcQuery<PetType> selectByName;
+
+	private final JdbcQuery<PetType> selectAll;
+
+	private final JdbcQuery<PetType> selectPage;
+
+	private final JdbcStatement updatePetType;
+
+	private final JdbcStatement deleteVisitsOfType;
+
+	private final JdbcStatement deletePetsOfType;
+
+	private final JdbcStatement deletePetType;
+
 	@Autowired
 	public JdbcPetTypeRepositoryImpl(DataSource dataSource) {
-		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 		this.insertPetType = new SimpleJdbcInsert(dataSource)
 	            .withTableName("types")
 	            .usingGeneratedKeyColumns("id");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		JdbcNamedEntityRowMapper<PetType> rowMapper = new JdbcNamedEntityRowMapper<>(PetType::new);
+		this.selectById = new JdbcQuery<>(jdbcTemplate, "SELECT id, name FROM types WHERE id= :id", rowMapper);
+		this.selectByName = new JdbcQuery<>(jdbcTemplate, "SELECT id, name FROM types WHERE name= :name", rowMapper);
+		this.selectAll = new JdbcQuery<>(jdbcTemplate, "SELECT id, name FROM types", rowMapper);
+		this.selectPage = new JdbcQuery<>(jdbcTemplate,
+			"SELECT id, name FROM types WHERE id > :afterId ORDER BY id LIMIT :limit", rowMapper);
+		this.updatePetType = new JdbcStatement(jdbcTemplate, "UPDATE types SET name=:name WHERE id=:id");
+		this.deleteVisitsOfType = new JdbcStatement(jdbcTemplate,
+			"DELETE FROM visits WHERE pet_id IN (SELECT id FROM pets WHERE type_id=:id)");
+		this.deletePetsOfType = new JdbcStatement(jdbcTemplate, "DELETE FROM pets WHERE type_id=:id");
+		this.deletePetType = new JdbcStatement(jdbcTemplate, "DELETE FROM types WHERE id=:id");
 	}
 
 	@Override
 	public PetType findById(int id) {
 		PetType petType;
         try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            petType = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM types WHERE id= :id",
-                params,
-                BeanPropertyRowMapper.newInstance(PetType.class));
+            petType = this.selectById.single(id);
         } catch (EmptyResultDataAccessException ex) {
             throw new ObjectRetrievalFailureException(PetType.class, id);
         }
@@ -80,12 +93,7 @@ public class JdbcPetTypeRepositoryImpl implements PetTypeRepository {
     public PetType findByName(String name) throws DataAccessException {
         PetType petType;
         try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("name", name);
-            petType = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM types WHERE name= :name",
-                params,
-                BeanPropertyRowMapper.newInstance(PetType.class));
+            petType = this.selectByName.single(name);
         } catch (EmptyResultDataAccessException ex) {
             throw new ObjectRetrievalFailureException(PetType.class, name);
         }
@@ -94,52 +102,30 @@ public class JdbcPetTypeRepositoryImpl implements PetTypeRepository {
 
     @Override
 	public Collection<PetType> findAll() throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM types",
-            params,
-            BeanPropertyRowMapper.newInstance(PetType.class));
+        return this.selectAll.list();
+	}
+
+	@Override
+	public Collection<PetType> findAll(int afterId, int limit) throws DataAccessException {
+		return this.selectPage.list(afterId, limit);
 	}
 
 	@Override
 	public void save(PetType petType) throws DataAccessException {
-		BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(petType);
 		if (petType.isNew()) {
-            Number newKey = this.insertPetType.executeAndReturnKey(parameterSource);
+            Number newKey = this.insertPetType.executeAndReturnKey(new BeanPropertySqlParameterSource(petType));
             petType.setId(newKey.intValue());
         } else {
-            this.namedParameterJdbcTemplate.update("UPDATE types SET name=:name WHERE id=:id",
-                parameterSource);
+            this.updatePetType.update(petType.getName(), petType.getId());
         }
 	}
 
 	@Override
 	public void delete(PetType petType) throws DataAccessException {
-		Map<String, Object> pettype_params = new HashMap<>();
-		pettype_params.put("id", petType.getId());
-		List<Pet> pets = new ArrayList<Pet>();
-		pets = this.namedParameterJdbcTemplate.
-    			query("SELECT pets.id, name, birth_date, type_id, owner_id FROM pets WHERE type_id=:id",
-    			pettype_params,
-    			BeanPropertyRowMapper.newInstance(Pet.class));
-		// cascade delete pets
-		for (Pet pet : pets){
-			Map<String, Object> pet_params = new HashMap<>();
-			pet_params.put("id", pet.getId());
-			List<Visit> visits = new ArrayList<Visit>();
-			visits = this.namedParameterJdbcTemplate.query(
-		            "SELECT id, pet_id, visit_date, description FROM visits WHERE pet_id = :id",
-		            pet_params,
-		            BeanPropertyRowMapper.newInstance(Visit.class));
-	        // cascade delete visits
-	        for (Visit visit : visits){
-	        	Map<String, Object> visit_params = new HashMap<>();
-	        	visit_params.put("id", visit.getId());
-	        	this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", visit_params);
-	        }
-	        this.namedParameterJdbcTemplate.update("DELETE FROM pets WHERE id=:id", pet_params);
-        }
-        this.namedParameterJdbcTemplate.update("DELETE FROM types WHERE id=:id", pettype_params);
+		// cascade delete visits and pets with set-based statements
+		this.deleteVisitsOfType.update(petType.getId());
+		this.deletePetsOfType.update(petType.getId());
+		this.deletePetType.update(petType.getId());
 	}
 
 }
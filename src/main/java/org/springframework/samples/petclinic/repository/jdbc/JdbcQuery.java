@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * A {@link JdbcStatement} returning rows mapped by a fixed {@link RowMapper}.
+ */
+class JdbcQuery<T> extends JdbcStatement {
+
+    private final RowMapper<T> rowMapper;
+
+    JdbcQuery(JdbcOperations jdbcOperations, String namedSql, RowMapper<T> rowMapper) {
+        super(jdbcOperations, namedSql);
+        this.rowMapper = rowMapper;
+    }
+
+    List<T> list(Object... args) throws DataAccessException {
+        return this.jdbcOperations.query(getSql(), this.rowMapper, bind(args));
+    }
+
+    /**
+     * Returns the single row matching the arguments.
+     *
+     * @throws EmptyResultDataAccessException if no row matches
+     */
+    T single(Object... args) throws DataAccessException {
+        return this.jdbcOperations.queryForObject(getSql(), this.rowMapper, bind(args));
+    }
+
+}
@@ -24,7 +24,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
@@ -46,24 +46,41 @@ public class JdbcSpecialtyRepositoryImpl implements SpecialtyRepository {
 
 	private SimpleJdbcInsert insertSpecialty;
 
+	private final JdbcNamedEntityRowMapper<Specialty> rowMapper = new JdbcNamedEntityRowMapper<>(Specialty::new);
+
+	private final JdbcQuery<Specialty> selectById;
+
+	private final JdbcQuery<Specialty> selectAll;
+
+	private final JdbcQuery<Specialty> selectPage;
+
+	private final JdbcStatement updateSpecialty;
+
+	private final JdbcStatement deleteVetSpecialties;
+
+	private final JdbcStatement deleteSpecialty;
+
 	@Autowired
 	public JdbcSpecialtyRepositoryImpl(DataSource dataSource) {
 		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
 		this.insertSpecialty = new SimpleJdbcInsert(dataSource)
 	            .withTableName("specialties")
 	            .usingGeneratedKeyColumns("id");
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+		this.selectById = new JdbcQuery<>(jdbcTemplate, "SELECT id, name FROM specialties WHERE id= :id", this.rowMapper);
+		this.selectAll = new JdbcQuery<>(jdbcTemplate, "SELECT id, name FROM specialties", this.rowMapper);
+		this.selectPage = new JdbcQuery<>(jdbcTemplate,
+			"SELECT id, name FROM specialties WHERE id > :afterId ORDER BY id LIMIT :limit", this.rowMapper);
+		this.updateSpecialty = new JdbcStatement(jdbcTemplate, "UPDATE specialties SET name=:name WHERE id=:id");
+		this.deleteVetSpecialties = new JdbcStatement(jdbcTemplate, "DELETE FROM vet_specialties WHERE specialty_id=:id");
+		this.deleteSpecialty = new JdbcStatement(jdbcTemplate, "DELETE FROM specialties WHERE id=:id");
 	}
 
 	@Override
 	public Specialty findById(int id) {
 		Specialty specialty;
         try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            specialty = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM specialties WHERE id= :id",
-                params,
-                BeanPropertyRowMapper.newInstance(Specialty.class));
+            specialty = this.selectById.single(id);
         } catch (EmptyResultDataAccessException ex) {
             throw new ObjectRetrievalFailureException(Specialty.class, id);
         }
@@ -80,7 +97,7 @@ public class JdbcSpecialtyRepositoryImpl implements SpecialtyRepository {
             specialties = this.namedParameterJdbcTemplate.query(
                 sql,
                 params,
-                new BeanPropertyRowMapper<>(Specialty.class));
+                this.rowMapper);
         } catch (EmptyResultDataAccessException ex){
             throw new ObjectRetrievalFailureException(Specialty.class, names);
         }
@@ -90,32 +107,29 @@ public class JdbcSpecialtyRepositoryImpl implements SpecialtyRepository {
 
     @Override
 	public Collection<Specialty> findAll() throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id, name FROM specialties",
-            params,
-            BeanPropertyRowMapper.newInstance(Specialty.class));
+        return this.selectAll.list();
+	}
+
+	@Override
+	public Collection<Specialty> findAll(int afterId, int limit) throws DataAccessException {
+		return this.selectPage.list(afterId, limit);
 	}
 
 	@Override
 	public void save(Specialty specialty) throws DataAccessException {
-		BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(specialty);
 		if (specialty.isNew()) {
-            Number newKey = this.insertSpecialty.executeAndReturnKey(parameterSource);
+            Number newKey = this.insertSpecialty.executeAndReturnKey(new BeanPropertySqlParameterSource(specialty));
             specialty.setId(newKey.intValue());
         } else {
-            this.namedParameterJdbcTemplate.update("UPDATE specialties SET name=:name WHERE id=:id",
-                parameterSource);
+            this.updateSpecialty.update(specialty.getName(), specialty.getId());
         }
 
 	}
 
 	@Override
 	public void delete(Specialty specialty) throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-        params.put("id", specialty.getId());
-        this.namedParameterJdbcTemplate.update("DELETE FROM vet_specialties WHERE specialty_id=:id", params);
-        this.namedParameterJdbcTemplate.update("DELETE FROM specialties WHERE id=:id", params);
+        this.deleteVetSpecialties.update(specialty.getId());
+        this.deleteSpecialty.update(specialty.getId());
 	}
 
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2018 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.EmptySqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+
+/**
+ * A SQL statement with named parameters that is parsed once, when the repository is created, and then executed
+ * with positional arguments through a {@link JdbcOperations} instance.
+ * <p>
+ * Arguments are passed in the order in which the distinct parameter names first appear in the SQL; a name used
+ * several times is bound from the same argument. Unlike {@code NamedParameterJdbcTemplate}, no parameter map is
+ * built and the SQL is not parsed again on each call. Collection-valued parameters (<code>IN (:ids)</code>) are not
+ * expanded, so such statements must keep using {@code NamedParameterJdbcTemplate}.
+ *
+ * @see JdbcQuery
+ */
+class JdbcStatement {
+
+    protected final JdbcOperations jdbcOperations;
+
+    private final String sql;
+
+    private final List<String> parameterNames;
+
+    /**
+     * Index of the argument bound to each placeholder, or <code>null</code> when every parameter name is used only
+     * once and the arguments can be passed through as they are.
+     */
+    private final int[] argumentIndexes;
+
+    JdbcStatement(JdbcOperations jdbcOperations, String namedSql) {
+        this.jdbcOperations = jdbcOperations;
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(namedSql);
+        this.sql = NamedParameterUtils.substituteNamedParameters(parsedSql, EmptySqlParameterSource.INSTANCE);
+        List<SqlParameter> placeholders =
+            NamedParameterUtils.buildSqlParameterList(parsedSql, EmptySqlParameterSource.INSTANCE);
+        List<String> names = new ArrayList<>();
+        int[] indexes = new int[placeholders.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            String name = placeholders.get(i).getName();
+            int index = names.indexOf(name);
+            if (index < 0) {
+                index = names.size();
+                names.add(name);
+            }
+            indexes[i] = index;
+        }
+        this.parameterNames = List.copyOf(names);
+        this.argumentIndexes = names.size() == indexes.length ? null : indexes;
+    }
+
+    /**
+     * Returns the SQL with its named parameters replaced by <code>?</code> placeholders.
+     */
+    String getSql() {
+        return this.sql;
+    }
+
+    int update(Object... args) throws DataAccessException {
+        return this.jdbcOperations.update(this.sql, bind(args));
+    }
+
+    /**
+     * Executes the statement once per argument array, sending all executions to the database in one JDBC batch.
+     */
+    int[] batchUpdate(List<Object[]> batchArgs) throws DataAccessException {
+        List<Object[]> values = new ArrayList<>(batchArgs.size());
+        for (Object[] args : batchArgs) {
+            values.add(bind(args));
+        }
+        return this.jdbcOperations.batchUpdate(this.sql, values);
+    }
+
+    <T> T query(ResultSetExtractor<T> resultSetExtractor, Object... args) throws DataAccessException {
+        return this.jdbcOperations.query(this.sql, resultSetExtractor, bind(args));
+    }
+
+    /**
+     * Checks the arguments against the parsed parameter names and orders them by placeholder.
+     */
+    protected Object[] bind(Object[] args) {
+        if (args.length != this.parameterNames.size()) {
+            throw new InvalidDataAccessApiUsageException("SQL [" + this.sql + "] expects " +
+                this.parameterNames.size() + " arguments " + this.parameterNames + " but got " + args.length);
+        }
+        if (this.argumentIndexes == null) {
+            return args;
+        }
+        Object[] values = new Object[this.argumentIndexes.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = args[this.argumentIndexes[i]];
+        }
+        return values;
+    }
+
+}
@@ -1,17 +1,13 @@
 package org.springframework.samples.petclinic.repository.jdbc;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.samples.petclinic.model.Role;
 import org.springframework.samples.petclinic.model.User;
@@ -22,46 +18,46 @@ import org.springframework.stereotype.Repository;
 @Profile("jdbc")
 public class JdbcUserRepositoryImpl implements UserRepository {
 
-    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private SimpleJdbcInsert insertUser;
+    private final JdbcQuery<User> selectByUsername;
+    private final JdbcStatement updateUser;
+    private final JdbcStatement deleteRoles;
+    private final JdbcStatement insertRole;
 
     @Autowired
     public JdbcUserRepositoryImpl(DataSource dataSource) {
-        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
         this.insertUser = new SimpleJdbcInsert(dataSource).withTableName("users");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        this.selectByUsername = new JdbcQuery<>(jdbcTemplate,
+            "SELECT username, password, enabled FROM users WHERE username=:username", new JdbcUserRowMapper());
+        this.updateUser = new JdbcStatement(jdbcTemplate,
+            "UPDATE users SET password=:password, enabled=:enabled WHERE username=:username");
+        this.deleteRoles = new JdbcStatement(jdbcTemplate, "DELETE FROM roles WHERE username=:username");
+        this.insertRole = new JdbcStatement(jdbcTemplate, "INSERT INTO roles(username, role) VALUES (:username, :role)");
     }
 
     @Override
     public void save(User user) throws DataAccessException {
 
-        BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(user);
-
         try {
             getByUsername(user.getUsername());
-            this.namedParameterJdbcTemplate.update("UPDATE users SET password=:password, enabled=:enabled WHERE username=:username", parameterSource);
+            this.updateUser.update(user.getPassword(), user.getEnabled(), user.getUsername());
         } catch (EmptyResultDataAccessException e) {
-            this.insertUser.execute(parameterSource);
+            this.insertUser.execute(new BeanPropertySqlParameterSource(user));
         } finally {
             updateUserRoles(user);
         }
     }
 
     private User getByUsername(String username) {
-
-        Map<String, Object> params = new HashMap<>();
-        params.put("username", username);
-        return this.namedParameterJdbcTemplate.queryForObject("SELECT * FROM users WHERE username=:username",
-            params, BeanPropertyRowMapper.newInstance(User.class));
+        return this.selectByUsername.single(username);
     }
 
     private void updateUserRoles(User user) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("username", user.getUsername());
-        this.namedParameterJdbcTemplate.update("DELETE FROM roles WHERE username=:username", params);
+        this.deleteRoles.update(user.getUsername());
         for (Role role : user.getRoles()) {
-            params.put("role", role.getName());
             if (role.getName() != null) {
-                this.namedParameterJdbcTemplate.update("INSERT INTO roles(username, role) VALUES (:username, :role)", params);
+                this.insertRole.update(user.getUsername(), role.getName());
             }
         }
     }
@@ -15,30 +15,25 @@
  */
 package org.springframework.samples.petclinic.repository.jdbc;
 
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.BeanPropertySqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
-import org.springframework.samples.petclinic.util.EntityUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -57,118 +52,131 @@ import org.springframework.stereotype.Repository;
 @Profile("jdbc")
 public class JdbcVetRepositoryImpl implements VetRepository {
 
+    private static final String VETS_WITH_SPECIALTIES = vetsWithSpecialties("vets");
+
+    /**
+     * One page of vets with their specialties: the page is cut on the <code>vets</code> table before the join, so
+     * the limit counts vets rather than joined rows.
+     */
+    private static final String VETS_PAGE_WITH_SPECIALTIES = vetsWithSpecialties(
+        "(SELECT id, first_name, last_name FROM vets WHERE id > :afterId ORDER BY id LIMIT :limit)") +
+        " ORDER BY vets.id";
+
     private JdbcTemplate jdbcTemplate;
-	private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 	private SimpleJdbcInsert insertVet;
+	private final JdbcAggregateExtractor<Vet> vetExtractor;
+	private final JdbcStatement selectAll;
+	private final JdbcStatement selectPage;
+	private final JdbcStatement selectById;
+	private final JdbcStatement updateVet;
+	private final JdbcStatement deleteVetSpecialties;
+	private final JdbcStatement deleteVet;
 
     @Autowired
     public JdbcVetRepositoryImpl(DataSource dataSource, JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
 		this.insertVet = new SimpleJdbcInsert(dataSource).withTableName("vets").usingGeneratedKeyColumns("id");
-		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+		this.vetExtractor = new JdbcAggregateExtractor<>("vet_id", (rs, rowNum) -> {
+			Vet vet = new Vet();
+			vet.setId(rs.getInt("vet_id"));
+			vet.setFirstName(rs.getString("first_name"));
+			vet.setLastName(rs.getString("last_name"));
+			return vet;
+		});
+		this.vetExtractor.root().sharedChildren("specialty_id", (rs, rowNum) -> {
+			Specialty specialty = new Specialty();
+			specialty.setId(rs.getInt("specialty_id"));
+			specialty.setName(rs.getString("specialty_name"));
+			return specialty;
+		}, Vet::addSpecialty);
+		this.selectAll = new JdbcStatement(jdbcTemplate,
+			VETS_WITH_SPECIALTIES + " ORDER BY last_name, first_name, vets.id");
+		this.selectPage = new JdbcStatement(jdbcTemplate, VETS_PAGE_WITH_SPECIALTIES);
+		this.selectById = new JdbcStatement(jdbcTemplate, VETS_WITH_SPECIALTIES + " WHERE vets.id= :id");
+		this.updateVet = new JdbcStatement(jdbcTemplate,
+			"UPDATE vets SET first_name=:firstName, last_name=:lastName WHERE id=:id");
+		this.deleteVetSpecialties = new JdbcStatement(jdbcTemplate, "DELETE FROM vet_specialties WHERE vet_id=:id");
+		this.deleteVet = new JdbcStatement(jdbcTemplate, "DELETE FROM vets WHERE id=:id");
     }
 
     /**
      * Refresh the cache of Vets that the ClinicService is holding.
+     * <p>
+     * Vets and their specialties are read with a single join; vets sharing a specialty share its instance.
      */
     @Override
     public Collection<Vet> findAll() throws DataAccessException {
-        List<Vet> vets = new ArrayList<>();
-        // Retrieve the list of all vets.
-        vets.addAll(this.jdbcTemplate.query(
-            "SELECT id, first_name, last_name FROM vets ORDER BY last_name,first_name",
-            BeanPropertyRowMapper.newInstance(Vet.class)));
+        return this.selectAll.query(this.vetExtractor);
+    }
 
-        // Retrieve the list of all possible specialties.
-        final List<Specialty> specialties = this.jdbcTemplate.query(
-            "SELECT id, name FROM specialties",
-            BeanPropertyRowMapper.newInstance(Specialty.class));
+    @Override
+    public Collection<Vet> findAll(int afterId, int limit) throws DataAccessException {
+        return this.selectPage.query(this.vetExtractor, afterId, limit);
+    }
 
-        // Build each vet's list of specialties.
-        for (Vet vet : vets) {
-            final List<Integer> vetSpecialtiesIds = this.jdbcTemplate.query(
-                "SELECT specialty_id FROM vet_specialties WHERE vet_id=?",
-                new BeanPropertyRowMapper<Integer>() {
-                    @Override
-                    public Integer mapRow(ResultSet rs, int row) throws SQLException {
-                        return rs.getInt(1);
-                    }
-                },
-                vet.getId());
-            for (int specialtyId : vetSpecialtiesIds) {
-                Specialty specialty = EntityUtils.getById(specialties, Specialty.class, specialtyId);
-                vet.addSpecialty(specialty);
-            }
-        }
-        return vets;
+    private static String vetsWithSpecialties(String vets) {
+        return "SELECT vets.id as vet_id, first_name, last_name, specialties.id as specialty_id, specialties.name as specialty_name " +
+            "FROM " + vets + " vets LEFT OUTER JOIN vet_specialties ON vets.id = vet_specialties.vet_id " +
+            "LEFT OUTER JOIN specialties ON vet_specialties.specialty_id = specialties.id";
     }
-    
+
 	@Override
 	public Vet findById(int id) throws DataAccessException {
-		Vet vet;
-		try {
-			Map<String, Object> vet_params = new HashMap<>();
-			vet_params.put("id", id);
-			vet = this.namedParameterJdbcTemplate.queryForObject(
-					"SELECT id, first_name, last_name FROM vets WHERE id= :id",
-					vet_params,
-					BeanPropertyRowMapper.newInstance(Vet.class));
-
-			final List<Specialty> specialties = this.namedParameterJdbcTemplate.query(
-					"SELECT id, name FROM specialties", vet_params, BeanPropertyRowMapper.newInstance(Specialty.class));
-
-			final List<Integer> vetSpecialtiesIds = this.namedParameterJdbcTemplate.query(
-					"SELECT specialty_id FROM vet_specialties WHERE vet_id=:id",
-					vet_params,
-					new BeanPropertyRowMapper<Integer>() {
-						@Override
-						public Integer mapRow(ResultSet rs, int row) throws SQLException {
-							return rs.getInt(1);
-						}
-					});
-			for (int specialtyId : vetSpecialtiesIds) {
-				Specialty specialty = EntityUtils.getById(specialties, Specialty.class, specialtyId);
-				vet.addSpecialty(specialty);
-			}
-
-		} catch (EmptyResultDataAccessException ex) {
+		List<Vet> vets = this.selectById.query(this.vetExtractor, id);
+		if (vets.isEmpty()) {
 			throw new ObjectRetrievalFailureException(Vet.class, id);
 		}
-		return vet;
+		return vets.get(0);
 	}
 
 	@Override
 	public void save(Vet vet) throws DataAccessException {
-		BeanPropertySqlParameterSource parameterSource = new BeanPropertySqlParameterSource(vet);
 		if (vet.isNew()) {
-			Number newKey = this.insertVet.executeAndReturnKey(parameterSource);
+			Number newKey = this.insertVet.executeAndReturnKey(new BeanPropertySqlParameterSource(vet));
 			vet.setId(newKey.intValue());
-			updateVetSpecialties(vet);
+			updateVetSpecialties(vet, Collections.emptySet());
 		} else {
-			this.namedParameterJdbcTemplate
-					.update("UPDATE vets SET first_name=:firstName, last_name=:lastName WHERE id=:id", parameterSource);
-			updateVetSpecialties(vet);
+			this.updateVet.update(vet.getFirstName(), vet.getLastName(), vet.getId());
+			updateVetSpecialties(vet, new HashSet<>(this.jdbcTemplate.queryForList(
+					"SELECT specialty_id FROM vet_specialties WHERE vet_id=?", Integer.class, vet.getId())));
 		}
 	}
 
 	@Override
 	public void delete(Vet vet) throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-		params.put("id", vet.getId());
-		this.namedParameterJdbcTemplate.update("DELETE FROM vet_specialties WHERE vet_id=:id", params);
-		this.namedParameterJdbcTemplate.update("DELETE FROM vets WHERE id=:id", params);
+		this.deleteVetSpecialties.update(vet.getId());
+		this.deleteVet.update(vet.getId());
 	}
 	
-	private void updateVetSpecialties(Vet vet) throws DataAccessException {
-		Map<String, Object> params = new HashMap<>();
-		params.put("id", vet.getId());
-		this.namedParameterJdbcTemplate.update("DELETE FROM vet_specialties WHERE vet_id=:id", params);
+	/**
+	 * Applies the difference between the stored and the current specialties of the vet to the
+	 * <code>vet_specialties</code> table with batched deletes and inserts; an unchanged vet causes no writes.
+	 */
+	private void updateVetSpecialties(Vet vet, Set<Integer> storedSpecialtyIds) throws DataAccessException {
+		Set<Integer> specialtyIds = new HashSet<>();
 		for (Specialty spec : vet.getSpecialties()) {
-			params.put("spec_id", spec.getId());
-			if(!(spec.getId() == null)) {
-				this.namedParameterJdbcTemplate.update("INSERT INTO vet_specialties VALUES (:id, :spec_id)", params);
+			if (spec.getId() != null) {
+				specialtyIds.add(spec.getId());
+			}
+		}
+		List<Object[]> removed = new ArrayList<>();
+		for (Integer specialtyId : storedSpecialtyIds) {
+			if (!specialtyIds.contains(specialtyId)) {
+				removed.add(new Object[]{vet.getId(), specialtyId});
 			}
 		}
+		List<Object[]> added = new ArrayList<>();
+		for (Integer specialtyId : specialtyIds) {
+			if (!storedSpecialtyIds.contains(specialtyId)) {
+				added.add(new Object[]{vet.getId(), specialtyId});
+			}
+		}
+		if (!removed.isEmpty()) {
+			this.jdbcTemplate.batchUpdate("DELETE FROM vet_specialties WHERE vet_id=? AND specialty_id=?", removed);
+		}
+		if (!added.isEmpty()) {
+			this.jdbcTemplate.batchUpdate("INSERT INTO vet_specialties (vet_id, specialty_id) VALUES (?, ?)", added);
+		}
 	}
 
 }
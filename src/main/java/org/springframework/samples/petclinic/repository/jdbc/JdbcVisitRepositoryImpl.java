@@ -16,25 +16,23 @@
 package org.springframework.samples.petclinic.repository.jdbc;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.dao.EmptyResultDataAccessException;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.VisitRepository;
 import org.springframework.stereotype.Repository;
 
 import javax.sql.DataSource;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A simple JDBC-based implementation of the {@link VisitRepository} interface.
@@ -52,42 +50,77 @@ import java.util.*;
 @Profile("jdbc")
 public class JdbcVisitRepositoryImpl implements VisitRepository {
 
-    protected SimpleJdbcInsert insertVisit;
-    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private static final String VISITS_WITH_PET_AND_OWNER =
+        "SELECT visits.id as visit_id, visit_date, description, pets.id as pets_id, pets.name, birth_date, " +
+            "type_id, types.name as type_name, owner_id, owners.first_name, owners.last_name, owners.address, " +
+            "owners.city, owners.telephone " +
+            "FROM visits JOIN pets ON visits.pet_id = pets.id JOIN types ON pets.type_id = types.id " +
+            "JOIN owners ON pets.owner_id = owners.id";
+
+    private final JdbcIdAllocator visitIds;
+    private final JdbcAggregateExtractor<Visit> visitExtractor;
+    private final JdbcQuery<JdbcPet> selectPet;
+    private final JdbcQuery<Visit> selectVisitsOfPet;
+    private final JdbcStatement selectVisitDetails;
+    private final JdbcStatement selectAllVisitDetails;
+    private final JdbcStatement selectVisitDetailsPage;
+    private final JdbcStatement streamVisitDetails;
+    private final JdbcStatement insertVisit;
+    private final JdbcStatement updateVisit;
+    private final JdbcStatement deleteVisit;
 
     @Autowired
-    public JdbcVisitRepositoryImpl(DataSource dataSource) {
-        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
-
-        this.insertVisit = new SimpleJdbcInsert(dataSource)
-            .withTableName("visits")
-            .usingGeneratedKeyColumns("id");
+    public JdbcVisitRepositoryImpl(DataSource dataSource,
+                                   @Value("${petclinic.streaming.fetch-size:500}") int streamingFetchSize) {
+        this.visitIds = JdbcIdAllocator.forTable(dataSource, "visits");
+
+        // pets, pet types and owners are shared by the visits referencing them
+        this.visitExtractor = new JdbcAggregateExtractor<>("visit_id", new JdbcVisitRowMapper());
+        JdbcAggregateExtractor.Node<JdbcPet> pet =
+            this.visitExtractor.root().reference("pets_id", new JdbcPetRowMapper(), Visit::setPet);
+        pet.reference("type_id", (rs, rowNum) -> {
+            PetType petType = new PetType();
+            petType.setId(rs.getInt("type_id"));
+            petType.setName(rs.getString("type_name"));
+            return petType;
+        }, Pet::setType);
+        pet.reference("owner_id", (rs, rowNum) -> {
+            Owner owner = new Owner();
+            owner.setId(rs.getInt("owner_id"));
+            owner.setFirstName(rs.getString("first_name"));
+            owner.setLastName(rs.getString("last_name"));
+            owner.setAddress(rs.getString("address"));
+            owner.setCity(rs.getString("city"));
+            owner.setTelephone(rs.getString("telephone"));
+            return owner;
+        }, Pet::setOwner);
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        this.selectPet = new JdbcQuery<>(jdbcTemplate,
+            "SELECT id as pets_id, name, birth_date, type_id, owner_id FROM pets WHERE id=:id", new JdbcPetRowMapper());
+        this.selectVisitsOfPet = new JdbcQuery<>(jdbcTemplate,
+            "SELECT id as visit_id, visit_date, description FROM visits WHERE pet_id=:id", new JdbcVisitRowMapper());
+        this.selectVisitDetails = new JdbcStatement(jdbcTemplate, VISITS_WITH_PET_AND_OWNER + " WHERE visits.id= :id");
+        this.selectAllVisitDetails = new JdbcStatement(jdbcTemplate, VISITS_WITH_PET_AND_OWNER);
+        this.selectVisitDetailsPage = new JdbcStatement(jdbcTemplate,
+            VISITS_WITH_PET_AND_OWNER + " WHERE visits.id > :afterId ORDER BY visits.id LIMIT :limit");
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        streamingJdbcTemplate.setFetchSize(streamingFetchSize);
+        this.streamVisitDetails = new JdbcStatement(streamingJdbcTemplate,
+            VISITS_WITH_PET_AND_OWNER + " ORDER BY visits.id");
+        this.insertVisit = new JdbcStatement(jdbcTemplate,
+            "INSERT INTO visits (id, visit_date, description, pet_id) VALUES (:id, :visit_date, :description, :pet_id)");
+        this.updateVisit = new JdbcStatement(jdbcTemplate,
+            "UPDATE visits SET visit_date=:visit_date, description=:description, pet_id=:pet_id WHERE id=:id ");
+        this.deleteVisit = new JdbcStatement(jdbcTemplate, "DELETE FROM visits WHERE id=:id");
     }
 
 
-    /**
-     * Creates a {@link MapSqlParameterSource} based on data values from the supplied {@link Visit} instance.
-     */
-    protected MapSqlParameterSource createVisitParameterSource(Visit visit) {
-        return new MapSqlParameterSource()
-            .addValue("id", visit.getId())
-            .addValue("visit_date", visit.getDate())
-            .addValue("description", visit.getDescription())
-            .addValue("pet_id", visit.getPet().getId());
-    }
-
     @Override
     public List<Visit> findByPetId(Integer petId) {
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", petId);
-        JdbcPet pet = this.namedParameterJdbcTemplate.queryForObject(
-            "SELECT id as pets_id, name, birth_date, type_id, owner_id FROM pets WHERE id=:id",
-            params,
-            new JdbcPetRowMapper());
+        JdbcPet pet = this.selectPet.single(petId);
 
-        List<Visit> visits = this.namedParameterJdbcTemplate.query(
-            "SELECT id as visit_id, visit_date, description FROM visits WHERE pet_id=:id",
-            params, new JdbcVisitRowMapper());
+        List<Visit> visits = this.selectVisitsOfPet.list(petId);
 
         for (Visit visit : visits) {
             visit.setPet(pet);
@@ -98,80 +131,78 @@ public class JdbcVisitRepositoryImpl implements VisitRepository {
 
     @Override
     public Visit findById(int id) throws DataAccessException {
-        Visit visit;
-        try {
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", id);
-            visit = this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id as visit_id, visits.pet_id as pets_id, visit_date, description FROM visits WHERE id= :id",
-                params,
-                new JdbcVisitRowMapperExt());
-        } catch (EmptyResultDataAccessException ex) {
+        List<Visit> visits = this.selectVisitDetails.query(this.visitExtractor, id);
+        if (visits.isEmpty()) {
             throw new ObjectRetrievalFailureException(Visit.class, id);
         }
-        return visit;
+        return visits.get(0);
     }
 
+    /**
+     * Loads all {@link Visit Visits} together with their pet, pet type and owner from a single joined query.
+     */
     @Override
     public Collection<Visit> findAll() throws DataAccessException {
-        Map<String, Object> params = new HashMap<>();
-        return this.namedParameterJdbcTemplate.query(
-            "SELECT id as visit_id, pets.id as pets_id, visit_date, description FROM visits LEFT JOIN pets ON visits.pet_id = pets.id",
-            params, new JdbcVisitRowMapperExt());
+        return this.selectAllVisitDetails.query(this.visitExtractor);
+    }
+
+    @Override
+    public Collection<Visit> findAll(int afterId, int limit) throws DataAccessException {
+        return this.selectVisitDetailsPage.query(this.visitExtractor, afterId, limit);
+    }
+
+    /**
+     * Streams the visits joined with their pet, pet type and owner; each visit gets its own copies of them, as
+     * sharing would mean remembering every pet seen.
+     */
+    @Override
+    public void streamAll(Consumer<? super Visit> action) throws DataAccessException {
+        this.streamVisitDetails.query(this.visitExtractor.streaming(action));
     }
 
     @Override
     public void save(Visit visit) throws DataAccessException {
         if (visit.isNew()) {
-            Number newKey = this.insertVisit.executeAndReturnKey(createVisitParameterSource(visit));
-            visit.setId(newKey.intValue());
+            int id = this.visitIds.nextId();
+            this.insertVisit.update(id, visit.getDate(), visit.getDescription(), visit.getPet().getId());
+            visit.setId(id);
         } else {
-            this.namedParameterJdbcTemplate.update(
-                "UPDATE visits SET visit_date=:visit_date, description=:description, pet_id=:pet_id WHERE id=:id ",
-                createVisitParameterSource(visit));
+            this.updateVisit.update(visit.getDate(), visit.getDescription(), visit.getPet().getId(), visit.getId());
         }
     }
 
+    /**
+     * Inserts the new visits with IDs taken from the allocator and updates the others, one JDBC batch each.
+     */
     @Override
-    public void delete(Visit visit) throws DataAccessException {
-        Map<String, Object> params = new HashMap<>();
-        params.put("id", visit.getId());
-        this.namedParameterJdbcTemplate.update("DELETE FROM visits WHERE id=:id", params);
+    public void saveAll(Collection<Visit> visits) throws DataAccessException {
+        List<Visit> inserted = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Visit visit : visits) {
+            if (visit.isNew()) {
+                inserted.add(visit);
+                inserts.add(new Object[]{this.visitIds.nextId(), visit.getDate(), visit.getDescription(),
+                    visit.getPet().getId()});
+            } else {
+                updates.add(new Object[]{visit.getDate(), visit.getDescription(), visit.getPet().getId(),
+                    visit.getId()});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            this.insertVisit.batchUpdate(inserts);
+        }
+        if (!updates.isEmpty()) {
+            this.updateVisit.batchUpdate(updates);
+        }
+        for (int i = 0; i < inserted.size(); i++) {
+            inserted.get(i).setId((Integer) inserts.get(i)[0]);
+        }
     }
 
-    protected class JdbcVisitRowMapperExt implements RowMapper<Visit> {
-
-        @Override
-        public Visit mapRow(ResultSet rs, int rowNum) throws SQLException {
-            Visit visit = new Visit();
-            JdbcPet pet = new JdbcPet();
-            PetType petType = new PetType();
-            Owner owner = new Owner();
-            visit.setId(rs.getInt("visit_id"));
-            Date visitDate = rs.getDate("visit_date");
-            visit.setDate(new java.sql.Date(visitDate.getTime()).toLocalDate());
-            visit.setDescription(rs.getString("description"));
-            Map<String, Object> params = new HashMap<>();
-            params.put("id", rs.getInt("pets_id"));
-            pet = JdbcVisitRepositoryImpl.this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT pets.id as pets_id, name, birth_date, type_id, owner_id FROM pets WHERE pets.id=:id",
-                params,
-                new JdbcPetRowMapper());
-            params.put("type_id", pet.getTypeId());
-            petType = JdbcVisitRepositoryImpl.this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, name FROM types WHERE id= :type_id",
-                params,
-                BeanPropertyRowMapper.newInstance(PetType.class));
-            pet.setType(petType);
-            params.put("owner_id", pet.getOwnerId());
-            owner = JdbcVisitRepositoryImpl.this.namedParameterJdbcTemplate.queryForObject(
-                "SELECT id, first_name, last_name, address, city, telephone FROM owners WHERE id= :owner_id",
-                params,
-                BeanPropertyRowMapper.newInstance(Owner.class));
-            pet.setOwner(owner);
-            visit.setPet(pet);
-            return visit;
-        }
+    @Override
+    public void delete(Visit visit) throws DataAccessException {
+        this.deleteVisit.update(visit.getId());
     }
 
 }
@@ -16,14 +16,21 @@
 package org.springframework.samples.petclinic.repository.jpa;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 
+import org.hibernate.jpa.SpecHints;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.orm.hibernate5.support.OpenSessionInViewFilter;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
 import org.springframework.stereotype.Repository;
@@ -44,30 +51,33 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int fetchSize;
+
 
     /**
-     * Important: in the current version of this method, we load Owners with all their Pets and Visits while
-     * we do not need Visits at all and we only need one property from the Pet objects (the 'name' property).
-     * There are some ways to improve it such as:
-     * - creating a Ligtweight class (example here: https://community.jboss.org/wiki/LightweightClass)
-     * - Turning on lazy-loading and using {@link OpenSessionInViewFilter}
+     * Loads the matching Owners with their Pets, pet types and Visits in one query, following the
+     * {@link Owner#WITH_PETS} fetch plan.
      */
-    @SuppressWarnings("unchecked")
+    @Override
     public Collection<Owner> findByLastName(String lastName) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName");
-        query.setParameter("lastName", lastName + "%");
-        return query.getResultList();
+        return withPets("SELECT owner FROM Owner owner WHERE owner.lastName LIKE :lastName")
+            .setParameter("lastName", lastName + "%")
+            .getResultList();
     }
 
     @Override
     public Owner findById(int id) {
-        // using 'join fetch' because a single query should load both owners and pets
-        // using 'left join fetch' because it might happen that an owner does not have pets yet
-        Query query = this.em.createQuery("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id");
-        query.setParameter("id", id);
-        return (Owner) query.getSingleResult();
+        return withPets("SELECT owner FROM Owner owner WHERE owner.id =:id")
+            .setParameter("id", id)
+            .getSingleResult();
+    }
+
+    @Override
+    public Owner findById(int id, Set<Association> associations) {
+        return query("SELECT owner FROM Owner owner WHERE owner.id =:id", associations)
+            .setParameter("id", id)
+            .getSingleResult();
     }
 
 
@@ -81,11 +91,44 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
 
     }
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Collection<Owner> findAll() throws DataAccessException {
-		Query query = this.em.createQuery("SELECT owner FROM Owner owner");
-        return query.getResultList();
+		return withPets("SELECT owner FROM Owner owner").getResultList();
+	}
+
+	/**
+	 * Cuts the page on owner ids first, as a row limit on the fetch-joined query would count pets and visits.
+	 */
+	@Override
+	public Collection<Owner> findAll(int afterId, int limit, Set<Association> associations) throws DataAccessException {
+		return findByIdIn(this.em.createQuery(
+				"SELECT owner.id FROM Owner owner WHERE owner.id > :afterId ORDER BY owner.id", Integer.class)
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList(), associations);
+	}
+
+	@Override
+	public Collection<Owner> findByLastName(String lastName, int afterId, int limit, Set<Association> associations)
+		throws DataAccessException {
+		return findByIdIn(this.em.createQuery(
+				"SELECT owner.id FROM Owner owner WHERE owner.lastName LIKE :lastName AND owner.id > :afterId ORDER BY owner.id",
+				Integer.class)
+			.setParameter("lastName", lastName + "%")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList(), associations);
+	}
+
+	/**
+	 * Streams the owner ids, then reads the owners with their pets and visits a fetch at a time, as a cursor over the
+	 * fetch-joined rows would repeat each owner.
+	 */
+	@Override
+	public void streamAll(Consumer<? super Owner> action) throws DataAccessException {
+		JpaStreams.forEachChunk(this.em,
+			this.em.createQuery("SELECT owner.id FROM Owner owner ORDER BY owner.id", Integer.class),
+			this.fetchSize, ids -> findByIdIn(ids, Association.ALL), action);
 	}
 
 	@Override
@@ -93,4 +136,34 @@ public class JpaOwnerRepositoryImpl implements OwnerRepository {
 		this.em.remove(this.em.contains(owner) ? owner : this.em.merge(owner));
 	}
 
+	private TypedQuery<Owner> withPets(String jpql) {
+		return this.em.createQuery(jpql, Owner.class)
+			.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Owner.WITH_PETS));
+	}
+
+	/**
+	 * Creates the query following {@link Owner#WITH_PETS} when reading every association, or otherwise a fetch graph
+	 * of the pets and their types only, or no fetch graph at all when the pets are left out.
+	 */
+	private TypedQuery<Owner> query(String jpql, Set<Association> associations) {
+		if (!associations.contains(Association.PETS)) {
+			return this.em.createQuery(jpql, Owner.class);
+		}
+		if (associations.contains(Association.VISITS)) {
+			return withPets(jpql);
+		}
+		EntityGraph<Owner> graph = this.em.createEntityGraph(Owner.class);
+		graph.addSubgraph("pets").addAttributeNodes("type");
+		return this.em.createQuery(jpql, Owner.class).setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, graph);
+	}
+
+	private List<Owner> findByIdIn(List<Integer> ids, Set<Association> associations) {
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+		return query("SELECT owner FROM Owner owner WHERE owner.id IN :ids ORDER BY owner.id", associations)
+			.setParameter("ids", ids)
+			.getResultList();
+	}
+
 }
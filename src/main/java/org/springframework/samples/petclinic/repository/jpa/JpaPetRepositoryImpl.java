@@ -16,13 +16,21 @@
 package org.springframework.samples.petclinic.repository.jpa;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import jakarta.persistence.EntityGraph;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import org.hibernate.jpa.SpecHints;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetRepository;
@@ -52,7 +60,29 @@ public class JpaPetRepositoryImpl implements PetRepository {
 
     @Override
     public Pet findById(int id) {
-        return this.em.find(Pet.class, id);
+        return this.em.find(Pet.class, id,
+            Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Pet.WITH_DETAILS)));
+    }
+
+    /**
+     * Reads the pet without its visits, unless asked for, following a fetch graph built for the purpose.
+     */
+    @Override
+    public Pet findById(int id, Set<Association> associations) {
+        if (associations.contains(Association.VISITS)) {
+            return findById(id);
+        }
+        EntityGraph<Pet> graph = this.em.createEntityGraph(Pet.class);
+        graph.addAttributeNodes("type", "owner");
+        return this.em.find(Pet.class, id, Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, graph));
+    }
+
+    @Override
+    public Set<Integer> findOwnerIdsByPetIds(Collection<Integer> petIds) {
+        return new HashSet<>(this.em.createQuery(
+                "SELECT DISTINCT pet.owner.id FROM Pet pet WHERE pet.id IN :ids", Integer.class)
+            .setParameter("ids", petIds)
+            .getResultList());
     }
 
     @Override
@@ -64,21 +94,66 @@ public class JpaPetRepositoryImpl implements PetRepository {
         }
     }
 
-	@SuppressWarnings("unchecked")
+    /**
+     * Persists the pets one by one; the inserts are sent in JDBC batches when Hibernate flushes them.
+     */
+    @Override
+    public void saveAll(Collection<Pet> pets) {
+        for (Pet pet : pets) {
+            save(pet);
+        }
+    }
+
 	@Override
 	public Collection<Pet> findAll() throws DataAccessException {
-		return this.em.createQuery("SELECT pet FROM Pet pet").getResultList();
+		return withTypeAndVisits("SELECT pet FROM Pet pet").getResultList();
+	}
+
+	/**
+	 * Cuts the page on pet ids first when the visits are fetched, as a row limit on the fetch-joined query would count
+	 * them; without the visits, the limit applies to the query itself.
+	 */
+	@Override
+	public Collection<Pet> findAll(int afterId, int limit, Set<Association> associations) throws DataAccessException {
+		if (!associations.contains(Association.VISITS)) {
+			EntityGraph<Pet> graph = this.em.createEntityGraph(Pet.class);
+			graph.addAttributeNodes("type");
+			return this.em.createQuery("SELECT pet FROM Pet pet WHERE pet.id > :afterId ORDER BY pet.id", Pet.class)
+				.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, graph)
+				.setParameter("afterId", afterId)
+				.setMaxResults(limit)
+				.getResultList();
+		}
+		List<Integer> ids = this.em.createQuery("SELECT pet.id FROM Pet pet WHERE pet.id > :afterId ORDER BY pet.id",
+				Integer.class)
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+		return withTypeAndVisits("SELECT pet FROM Pet pet WHERE pet.id IN :ids ORDER BY pet.id")
+			.setParameter("ids", ids)
+			.getResultList();
 	}
 
 	@Override
 	public void delete(Pet pet) throws DataAccessException {
 		//this.em.remove(this.em.contains(pet) ? pet : this.em.merge(pet));
-		String petId = pet.getId().toString();
-		this.em.createQuery("DELETE FROM Visit visit WHERE pet.id=" + petId).executeUpdate();
-		this.em.createQuery("DELETE FROM Pet pet WHERE id=" + petId).executeUpdate();
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id = :petId")
+			.setParameter("petId", pet.getId())
+			.executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.id = :petId")
+			.setParameter("petId", pet.getId())
+			.executeUpdate();
 		if (em.contains(pet)) {
 			em.remove(pet);
 		}
 	}
 
+	private TypedQuery<Pet> withTypeAndVisits(String jpql) {
+		return this.em.createQuery(jpql, Pet.class)
+			.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Pet.WITH_TYPE_AND_VISITS));
+	}
+
 }
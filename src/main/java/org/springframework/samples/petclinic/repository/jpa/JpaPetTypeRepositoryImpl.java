@@ -16,18 +16,15 @@
 
 package org.springframework.samples.petclinic.repository.jpa;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
-import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
-import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.PetTypeRepository;
 import org.springframework.stereotype.Repository;
 
@@ -52,6 +49,7 @@ public class JpaPetTypeRepositoryImpl implements PetTypeRepository {
     public PetType findByName(String name) throws DataAccessException {
         return this.em.createQuery("SELECT p FROM PetType p WHERE p.name = :name", PetType.class)
             .setParameter("name", name)
+            .setHint(HibernateHints.HINT_CACHEABLE, true)
             .getSingleResult();
     }
 
@@ -62,6 +60,14 @@ public class JpaPetTypeRepositoryImpl implements PetTypeRepository {
 		return this.em.createQuery("SELECT ptype FROM PetType ptype").getResultList();
 	}
 
+	@Override
+	public Collection<PetType> findAll(int afterId, int limit) throws DataAccessException {
+		return this.em.createQuery("SELECT ptype FROM PetType ptype WHERE ptype.id > :afterId ORDER BY ptype.id", PetType.class)
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
 	@Override
 	public void save(PetType petType) throws DataAccessException {
 		if (petType.getId() == null) {
@@ -72,21 +78,17 @@ public class JpaPetTypeRepositoryImpl implements PetTypeRepository {
 
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public void delete(PetType petType) throws DataAccessException {
-		this.em.remove(this.em.contains(petType) ? petType : this.em.merge(petType));
 		Integer petTypeId = petType.getId();
-
-		List<Pet> pets = this.em.createQuery("SELECT pet FROM Pet pet WHERE type.id=" + petTypeId).getResultList();
-		for (Pet pet : pets){
-			List<Visit> visits = pet.getVisits();
-			for (Visit visit : visits){
-				this.em.createQuery("DELETE FROM Visit visit WHERE id=" + visit.getId()).executeUpdate();
-			}
-			this.em.createQuery("DELETE FROM Pet pet WHERE id=" + pet.getId()).executeUpdate();
-		}
-		this.em.createQuery("DELETE FROM PetType pettype WHERE id=" + petTypeId).executeUpdate();
+		// cascade delete visits and pets with set-based statements
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id IN (SELECT pet.id FROM Pet pet WHERE pet.type.id = :petTypeId)")
+			.setParameter("petTypeId", petTypeId)
+			.executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.type.id = :petTypeId")
+			.setParameter("petTypeId", petTypeId)
+			.executeUpdate();
+		this.em.remove(this.em.contains(petType) ? petType : this.em.merge(petType));
 	}
 
 }
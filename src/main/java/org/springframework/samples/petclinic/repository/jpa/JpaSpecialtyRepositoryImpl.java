@@ -23,6 +23,8 @@ import java.util.Set;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Specialty;
@@ -51,6 +53,7 @@ public class JpaSpecialtyRepositoryImpl implements SpecialtyRepository {
         final String jpql = "SELECT s FROM Specialty s WHERE s.name IN :names";
         return em.createQuery(jpql, Specialty.class)
             .setParameter("names", names)
+            .setHint(HibernateHints.HINT_CACHEABLE, true)
             .getResultList();
     }
 
@@ -60,6 +63,14 @@ public class JpaSpecialtyRepositoryImpl implements SpecialtyRepository {
 		return this.em.createQuery("SELECT s FROM Specialty s").getResultList();
 	}
 
+	@Override
+	public Collection<Specialty> findAll(int afterId, int limit) throws DataAccessException {
+		return this.em.createQuery("SELECT s FROM Specialty s WHERE s.id > :afterId ORDER BY s.id", Specialty.class)
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
 	@Override
 	public void save(Specialty specialty) throws DataAccessException {
 		if (specialty.getId() == null) {
@@ -73,7 +84,10 @@ public class JpaSpecialtyRepositoryImpl implements SpecialtyRepository {
 	public void delete(Specialty specialty) throws DataAccessException {
 		this.em.remove(this.em.contains(specialty) ? specialty : this.em.merge(specialty));
 		Integer specId = specialty.getId();
-		this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId).executeUpdate();
+		// only the cached vet specialty collections are evicted, not every second-level cache region
+		this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId).unwrap(NativeQuery.class)
+			.addSynchronizedQuerySpace("vet_specialties")
+			.executeUpdate();
 		this.em.createQuery("DELETE FROM Specialty specialty WHERE id=" + specId).executeUpdate();
 	}
 
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jpa;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+
+/**
+ * Runs bulk reads through a Hibernate {@link StatelessSession}, which keeps no persistence context: the entities are
+ * neither registered nor snapshotted for dirty checking, and nothing is flushed. Shared by the JPA and the Spring Data
+ * JPA repositories.
+ * <p>
+ * The stateless session works on the JDBC connection of the current session, so the read takes part in the running
+ * transaction. Outside read-only transactions, whose sessions never flush, pending changes are flushed before the
+ * read. As with any detached entity, associations the query does not fetch cannot be loaded later.
+ */
+public final class JpaStatelessReads {
+
+    private JpaStatelessReads() {
+    }
+
+    /**
+     * Returns the results of the HQL query, read by a stateless session on the connection of <code>em</code>.
+     */
+    public static <T> List<T> list(EntityManager em, String hql, Class<T> resultType) {
+        Session session = em.unwrap(Session.class);
+        if (session.getHibernateFlushMode() != FlushMode.MANUAL) {
+            // a stateless session does not see changes pending in the session, so they are written first
+            session.flush();
+        }
+        return session.doReturningWork(connection -> {
+            try (StatelessSession statelessSession = session.getSessionFactory().withStatelessOptions()
+                .connection(connection)
+                .openStatelessSession()) {
+                return statelessSession.createSelectionQuery(hql, resultType).getResultList();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jpa;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import org.hibernate.jpa.HibernateHints;
+
+/**
+ * Runs JPA queries as forward-only cursors, for results too large to be held in memory. Shared by the JPA and the
+ * Spring Data JPA repositories.
+ */
+public final class JpaStreams {
+
+    private JpaStreams() {
+    }
+
+    /**
+     * Passes each result of the query to the action while the rows are fetched <code>fetchSize</code> at a time. The
+     * entities are loaded read-only and the persistence context is cleared after every <code>fetchSize</code>
+     * results, so neither the driver nor the session holds more than one fetch of entities.
+     */
+    public static <T> void forEach(EntityManager em, TypedQuery<T> query, int fetchSize, Consumer<? super T> action) {
+        query.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+        query.setHint(HibernateHints.HINT_READ_ONLY, true);
+        try (Stream<T> results = query.getResultStream()) {
+            int count = 0;
+            for (Iterator<T> iterator = results.iterator(); iterator.hasNext(); ) {
+                action.accept(iterator.next());
+                if (++count % fetchSize == 0) {
+                    em.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the entities with the ids the query returns to the action, reading the ids through a forward-only cursor
+     * and the entities <code>fetchSize</code> ids at a time with <code>load</code>, so that its fetch plan may join
+     * collections without the cursor repeating the root row. The persistence context is cleared after every chunk.
+     */
+    public static <T> void forEachChunk(EntityManager em, TypedQuery<Integer> ids, int fetchSize,
+                                        Function<List<Integer>, List<T>> load, Consumer<? super T> action) {
+        ids.setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize);
+        try (Stream<Integer> results = ids.getResultStream()) {
+            List<Integer> chunk = new ArrayList<>(fetchSize);
+            for (Iterator<Integer> iterator = results.iterator(); iterator.hasNext(); ) {
+                chunk.add(iterator.next());
+                if (chunk.size() == fetchSize || !iterator.hasNext()) {
+                    load.apply(chunk).forEach(action);
+                    em.clear();
+                    chunk.clear();
+                }
+            }
+        }
+    }
+
+}
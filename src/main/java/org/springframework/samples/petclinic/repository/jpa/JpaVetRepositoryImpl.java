@@ -15,6 +15,7 @@
  */
 package org.springframework.samples.petclinic.repository.jpa;
 
+import org.hibernate.jpa.SpecHints;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Vet;
@@ -23,7 +24,10 @@ import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * JPA implementation of the {@link VetRepository} interface.
@@ -44,13 +48,36 @@ public class JpaVetRepositoryImpl implements VetRepository {
 
 	@Override
 	public Vet findById(int id) throws DataAccessException {
-		return this.em.find(Vet.class, id);
+		Vet vet = this.em.find(Vet.class, id,
+			Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Vet.WITH_SPECIALTIES)));
+		if (vet != null) {
+			// a vet served by the second-level cache skips the graph; its specialties are read from the cache too
+			vet.getNrOfSpecialties();
+		}
+		return vet;
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
 	public Collection<Vet> findAll() throws DataAccessException {
-		return this.em.createQuery("SELECT vet FROM Vet vet").getResultList();
+		return withSpecialties("SELECT vet FROM Vet vet").getResultList();
+	}
+
+	/**
+	 * Cuts the page on vet ids first, as a row limit on the fetch-joined query would count specialties.
+	 */
+	@Override
+	public Collection<Vet> findAll(int afterId, int limit) throws DataAccessException {
+		List<Integer> ids = this.em.createQuery("SELECT vet.id FROM Vet vet WHERE vet.id > :afterId ORDER BY vet.id",
+				Integer.class)
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+		if (ids.isEmpty()) {
+			return List.of();
+		}
+		return withSpecialties("SELECT vet FROM Vet vet WHERE vet.id IN :ids ORDER BY vet.id")
+			.setParameter("ids", ids)
+			.getResultList();
 	}
 
 	@Override
@@ -67,5 +94,10 @@ public class JpaVetRepositoryImpl implements VetRepository {
 		this.em.remove(this.em.contains(vet) ? vet : this.em.merge(vet));
 	}
 
+	private TypedQuery<Vet> withSpecialties(String jpql) {
+		return this.em.createQuery(jpql, Vet.class)
+			.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Vet.WITH_SPECIALTIES));
+	}
+
 
 }
@@ -17,11 +17,17 @@ package org.springframework.samples.petclinic.repository.jpa;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 
+import org.hibernate.jpa.SpecHints;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Visit;
@@ -46,6 +52,9 @@ public class JpaVisitRepositoryImpl implements VisitRepository {
     @PersistenceContext
     private EntityManager em;
 
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int fetchSize;
+
 
     @Override
     public void save(Visit visit) {
@@ -56,6 +65,16 @@ public class JpaVisitRepositoryImpl implements VisitRepository {
         }
     }
 
+    /**
+     * Persists the visits one by one; the inserts are sent in JDBC batches when Hibernate flushes them.
+     */
+    @Override
+    public void saveAll(Collection<Visit> visits) {
+        for (Visit visit : visits) {
+            save(visit);
+        }
+    }
+
 
     @Override
     @SuppressWarnings("unchecked")
@@ -67,13 +86,30 @@ public class JpaVisitRepositoryImpl implements VisitRepository {
 
 	@Override
 	public Visit findById(int id) throws DataAccessException {
-		return this.em.find(Visit.class, id);
+		return this.em.find(Visit.class, id,
+			Map.of(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Visit.WITH_PET)));
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Reads all visits with their pets through a stateless session, as this bulk read is never written back.
+	 */
 	@Override
 	public Collection<Visit> findAll() throws DataAccessException {
-        return this.em.createQuery("SELECT v FROM Visit v").getResultList();
+		return JpaStatelessReads.list(this.em, "SELECT v FROM Visit v JOIN FETCH v.pet", Visit.class);
+	}
+
+	@Override
+	public Collection<Visit> findAll(int afterId, int limit) throws DataAccessException {
+		return withPet("SELECT v FROM Visit v WHERE v.id > :afterId ORDER BY v.id")
+			.setParameter("afterId", afterId)
+			.setMaxResults(limit)
+			.getResultList();
+	}
+
+	@Override
+	public void streamAll(Consumer<? super Visit> action) throws DataAccessException {
+		JpaStreams.forEach(this.em, this.em.createQuery("SELECT v FROM Visit v ORDER BY v.id", Visit.class),
+			this.fetchSize, action);
 	}
 
 	@Override
@@ -81,4 +117,9 @@ public class JpaVisitRepositoryImpl implements VisitRepository {
         this.em.remove(this.em.contains(visit) ? visit : this.em.merge(visit));
 	}
 
+	private TypedQuery<Visit> withPet(String jpql) {
+		return this.em.createQuery(jpql, Visit.class)
+			.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Visit.WITH_PET));
+	}
+
 }
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.springdatajpa;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * Interface projections read by the paged listings of the Spring Data repositories, and their assembly into plain
+ * model objects.
+ * <p>
+ * The listings select the columns their DTOs are mapped from as flat rows, so Hibernate neither hydrates entities
+ * nor keeps them and their dirty-checking snapshots in the persistence context. The objects built from the rows are
+ * not managed; they are meant to be mapped to DTOs and must not be saved back.
+ */
+final class ListingProjections {
+
+    private ListingProjections() {
+    }
+
+    /**
+     * Row of a table with an ID and a name, such as <code>types</code> or <code>specialties</code>.
+     */
+    public interface NamedRow {
+
+        Integer getId();
+
+        String getName();
+
+    }
+
+    public interface VisitRow {
+
+        Integer getId();
+
+        LocalDate getDate();
+
+        String getDescription();
+
+        Integer getPetId();
+
+    }
+
+    /**
+     * Columns of a pet, its type and one of its visits, as read by an outer join; the visit columns are
+     * <code>null</code> for a pet without visits.
+     */
+    public interface PetColumns {
+
+        Integer getPetId();
+
+        String getPetName();
+
+        LocalDate getBirthDate();
+
+        Integer getTypeId();
+
+        String getTypeName();
+
+        Integer getVisitId();
+
+        LocalDate getVisitDate();
+
+        String getVisitDescription();
+
+    }
+
+    public interface PetRow extends PetColumns {
+
+        Integer getOwnerId();
+
+    }
+
+    /**
+     * Columns of an owner joined with those of one of its pets; the pet columns are <code>null</code> for an owner
+     * without pets.
+     */
+    public interface OwnerRow extends PetColumns {
+
+        Integer getId();
+
+        String getFirstName();
+
+        String getLastName();
+
+        String getAddress();
+
+        String getCity();
+
+        String getTelephone();
+
+    }
+
+    /**
+     * Columns of a vet joined with those of one of its specialties, which are <code>null</code> for a vet without
+     * specialties.
+     */
+    public interface VetRow {
+
+        Integer getId();
+
+        String getFirstName();
+
+        String getLastName();
+
+        Integer getSpecialtyId();
+
+        String getSpecialtyName();
+
+    }
+
+    static <T extends NamedEntity> List<T> named(List<NamedRow> rows, Supplier<T> factory) {
+        List<T> entities = new ArrayList<>(rows.size());
+        for (NamedRow row : rows) {
+            entities.add(named(row.getId(), row.getName(), factory));
+        }
+        return entities;
+    }
+
+    /**
+     * Builds the visits of the rows, each referring to a pet that carries nothing but its ID.
+     */
+    static List<Visit> visits(List<VisitRow> rows) {
+        List<Visit> visits = new ArrayList<>(rows.size());
+        Map<Integer, Pet> pets = new HashMap<>();
+        for (VisitRow row : rows) {
+            Visit visit = visit(row.getId(), row.getDate(), row.getDescription());
+            visit.setPet(pets.computeIfAbsent(row.getPetId(), ListingProjections::pet));
+            visits.add(visit);
+        }
+        return visits;
+    }
+
+    /**
+     * Builds the pets of the rows in row order, with their types and visits; the owner of each pet carries nothing
+     * but its ID.
+     */
+    static List<Pet> pets(List<PetRow> rows) {
+        Map<Integer, Pet> pets = new LinkedHashMap<>();
+        Map<Integer, PetType> types = new HashMap<>();
+        Map<Integer, Owner> owners = new HashMap<>();
+        for (PetRow row : rows) {
+            addPet(row, pets, types, pet -> owners.computeIfAbsent(row.getOwnerId(), ownerId -> {
+                Owner owner = new Owner();
+                owner.setId(ownerId);
+                return owner;
+            }).addPet(pet));
+        }
+        return new ArrayList<>(pets.values());
+    }
+
+    /**
+     * Builds the owners of the rows in row order, with their pets, pet types and visits.
+     */
+    static List<Owner> owners(List<OwnerRow> rows) {
+        Map<Integer, Owner> owners = new LinkedHashMap<>();
+        Map<Integer, Pet> pets = new HashMap<>();
+        Map<Integer, PetType> types = new HashMap<>();
+        for (OwnerRow row : rows) {
+            Owner owner = owners.computeIfAbsent(row.getId(), id -> {
+                Owner created = new Owner();
+                created.setId(id);
+                created.setFirstName(row.getFirstName());
+                created.setLastName(row.getLastName());
+                created.setAddress(row.getAddress());
+                created.setCity(row.getCity());
+                created.setTelephone(row.getTelephone());
+                return created;
+            });
+            if (row.getPetId() != null) {
+                addPet(row, pets, types, owner::addPet);
+            }
+        }
+        return new ArrayList<>(owners.values());
+    }
+
+    /**
+     * Builds the vets of the rows in row order, with their specialties.
+     */
+    static List<Vet> vets(List<VetRow> rows) {
+        Map<Integer, Vet> vets = new LinkedHashMap<>();
+        Map<Integer, Specialty> specialties = new HashMap<>();
+        for (VetRow row : rows) {
+            Vet vet = vets.computeIfAbsent(row.getId(), id -> {
+                Vet created = new Vet();
+                created.setId(id);
+                created.setFirstName(row.getFirstName());
+                created.setLastName(row.getLastName());
+                return created;
+            });
+            if (row.getSpecialtyId() != null) {
+                vet.addSpecialty(specialties.computeIfAbsent(row.getSpecialtyId(),
+                    id -> named(id, row.getSpecialtyName(), Specialty::new)));
+            }
+        }
+        return new ArrayList<>(vets.values());
+    }
+
+    /**
+     * Adds the visit of the row to its pet, creating the pet and handing it to <code>newPet</code> on its first row.
+     */
+    private static void addPet(PetColumns row, Map<Integer, Pet> pets, Map<Integer, PetType> types,
+                               Consumer<Pet> newPet) {
+        Pet pet = pets.get(row.getPetId());
+        if (pet == null) {
+            pet = pet(row.getPetId());
+            pet.setName(row.getPetName());
+            pet.setBirthDate(row.getBirthDate());
+            pet.setType(types.computeIfAbsent(row.getTypeId(), id -> named(id, row.getTypeName(), PetType::new)));
+            pets.put(pet.getId(), pet);
+            newPet.accept(pet);
+        }
+        if (row.getVisitId() != null) {
+            pet.addVisit(visit(row.getVisitId(), row.getVisitDate(), row.getVisitDescription()));
+        }
+    }
+
+    private static Pet pet(Integer id) {
+        Pet pet = new Pet();
+        pet.setId(id);
+        return pet;
+    }
+
+    private static Visit visit(Integer id, LocalDate date, String description) {
+        Visit visit = new Visit();
+        visit.setId(id);
+        visit.setDate(date);
+        visit.setDescription(description);
+        return visit;
+    }
+
+    private static <T extends NamedEntity> T named(Integer id, String name, Supplier<T> factory) {
+        T entity = factory.get();
+        entity.setId(id);
+        entity.setName(name);
+        return entity;
+    }
+
+}
@@ -16,13 +16,21 @@
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.repository.OwnerRepository;
+import org.springframework.samples.petclinic.repository.springdatajpa.ListingProjections.OwnerRow;
 
 /**
  * Spring Data JPA specialization of the {@link OwnerRepository} interface
@@ -32,13 +40,95 @@ import org.springframework.samples.petclinic.repository.OwnerRepository;
  */
 
 @Profile("spring-data-jpa")
-public interface SpringDataOwnerRepository extends OwnerRepository, Repository<Owner, Integer> {
+public interface SpringDataOwnerRepository extends OwnerRepository, Repository<Owner, Integer>, OwnerRepositoryOverride {
 
     @Override
-    @Query("SELECT DISTINCT owner FROM Owner owner left join fetch owner.pets WHERE owner.lastName LIKE :lastName%")
+    @EntityGraph(Owner.WITH_PETS)
+    @Query("SELECT owner FROM Owner owner WHERE owner.lastName LIKE :lastName%")
     Collection<Owner> findByLastName(@Param("lastName") String lastName);
 
     @Override
-    @Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+    @EntityGraph(Owner.WITH_PETS)
+    @Query("SELECT owner FROM Owner owner WHERE owner.id =:id")
     Owner findById(@Param("id") int id);
+
+    @Override
+    @EntityGraph(Owner.WITH_PETS)
+    Collection<Owner> findAll() throws DataAccessException;
+
+    /**
+     * Reads the owner as a flat row, joined with the rows of the pets and visits asked for, rather than as a managed
+     * entity.
+     */
+    @Override
+    default Owner findById(int id, Set<Association> associations) throws DataAccessException {
+        List<Owner> owners = ownersWithIds(List.of(id), associations);
+        if (owners.isEmpty()) {
+            throw new ObjectRetrievalFailureException(Owner.class, id);
+        }
+        return owners.get(0);
+    }
+
+    /**
+     * Cuts the page on owner ids first, as a row limit on the joined query would count pets and visits, then reads
+     * the owners with the pets, pet types and visits asked for as flat rows rather than as managed entities.
+     */
+    @Override
+    default Collection<Owner> findAll(int afterId, int limit, Set<Association> associations)
+        throws DataAccessException {
+        return ownersWithIds(findIdsAfter(afterId, Limit.of(limit)), associations);
+    }
+
+    @Override
+    default Collection<Owner> findByLastName(String lastName, int afterId, int limit, Set<Association> associations)
+        throws DataAccessException {
+        return ownersWithIds(findIdsByLastNameAfter(lastName, afterId, Limit.of(limit)), associations);
+    }
+
+    private List<Owner> ownersWithIds(List<Integer> ids, Set<Association> associations) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (!associations.contains(Association.PETS)) {
+            return ListingProjections.owners(findOwnerRowsByIdIn(ids));
+        }
+        if (!associations.contains(Association.VISITS)) {
+            return ListingProjections.owners(findRowsWithPetsByIdIn(ids));
+        }
+        return ListingProjections.owners(findRowsByIdIn(ids));
+    }
+
+    @Query("SELECT owner.id FROM Owner owner WHERE owner.id > :afterId ORDER BY owner.id")
+    List<Integer> findIdsAfter(@Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT owner.id FROM Owner owner WHERE owner.lastName LIKE :lastName% AND owner.id > :afterId ORDER BY owner.id")
+    List<Integer> findIdsByLastNameAfter(@Param("lastName") String lastName, @Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT owner.id AS id, owner.firstName AS firstName, owner.lastName AS lastName, " +
+        "owner.address AS address, owner.city AS city, owner.telephone AS telephone, pet.id AS petId, " +
+        "pet.name AS petName, pet.birthDate AS birthDate, petType.id AS typeId, petType.name AS typeName, " +
+        "visit.id AS visitId, visit.date AS visitDate, visit.description AS visitDescription " +
+        "FROM Owner owner LEFT JOIN owner.pets pet LEFT JOIN pet.type petType LEFT JOIN pet.visits visit " +
+        "WHERE owner.id IN :ids ORDER BY owner.id")
+    List<OwnerRow> findRowsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Reads the owners with their pets and pet types; the visit columns are not selected, so they read as
+     * <code>null</code>.
+     */
+    @Query("SELECT owner.id AS id, owner.firstName AS firstName, owner.lastName AS lastName, " +
+        "owner.address AS address, owner.city AS city, owner.telephone AS telephone, pet.id AS petId, " +
+        "pet.name AS petName, pet.birthDate AS birthDate, petType.id AS typeId, petType.name AS typeName " +
+        "FROM Owner owner LEFT JOIN owner.pets pet LEFT JOIN pet.type petType " +
+        "WHERE owner.id IN :ids ORDER BY owner.id")
+    List<OwnerRow> findRowsWithPetsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Reads the owners alone; the pet columns are not selected, so they read as <code>null</code>.
+     */
+    @Query("SELECT owner.id AS id, owner.firstName AS firstName, owner.lastName AS lastName, " +
+        "owner.address AS address, owner.city AS city, owner.telephone AS telephone " +
+        "FROM Owner owner WHERE owner.id IN :ids ORDER BY owner.id")
+    List<OwnerRow> findOwnerRowsByIdIn(@Param("ids") Collection<Integer> ids);
+
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.springdatajpa;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import org.hibernate.jpa.SpecHints;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.repository.jpa.JpaStreams;
+
+/**
+ * Streams owners through a forward-only cursor over their ids, which derived Spring Data queries cannot combine with
+ * clearing the persistence context.
+ */
+
+@Profile("spring-data-jpa")
+public class SpringDataOwnerRepositoryImpl implements OwnerRepositoryOverride {
+
+	@PersistenceContext
+    private EntityManager em;
+
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int fetchSize;
+
+	/**
+	 * Streams the owner ids, then reads the owners with their pets and visits a fetch at a time, as a cursor over the
+	 * fetch-joined rows would repeat each owner.
+	 */
+	@Override
+	public void streamAll(Consumer<? super Owner> action) throws DataAccessException {
+		JpaStreams.forEachChunk(this.em,
+			this.em.createQuery("SELECT owner.id FROM Owner owner ORDER BY owner.id", Integer.class),
+			this.fetchSize, this::withPets, action);
+	}
+
+	private List<Owner> withPets(List<Integer> ids) {
+		return this.em.createQuery("SELECT owner FROM Owner owner WHERE owner.id IN :ids ORDER BY owner.id", Owner.class)
+			.setHint(SpecHints.HINT_SPEC_FETCH_GRAPH, this.em.getEntityGraph(Owner.WITH_PETS))
+			.setParameter("ids", ids)
+			.getResultList();
+	}
+
+}
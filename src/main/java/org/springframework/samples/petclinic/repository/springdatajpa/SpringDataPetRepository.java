@@ -15,15 +15,23 @@
  */
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetRepository;
+import org.springframework.samples.petclinic.repository.springdatajpa.ListingProjections.PetRow;
 
 /**
  * Spring Data JPA specialization of the {@link PetRepository} interface
@@ -38,4 +46,69 @@ public interface SpringDataPetRepository extends PetRepository, Repository<Pet,
     @Override
     @Query("SELECT ptype FROM PetType ptype ORDER BY ptype.name")
     List<PetType> findPetTypes() throws DataAccessException;
+
+    @Override
+    @EntityGraph(Pet.WITH_DETAILS)
+    Pet findById(int id) throws DataAccessException;
+
+    @Override
+    @EntityGraph(Pet.WITH_TYPE_AND_VISITS)
+    Collection<Pet> findAll() throws DataAccessException;
+
+    @Override
+    @Query("SELECT DISTINCT pet.owner.id FROM Pet pet WHERE pet.id IN :ids")
+    Set<Integer> findOwnerIdsByPetIds(@Param("ids") Collection<Integer> petIds) throws DataAccessException;
+
+    /**
+     * Reads the pet with its visits as a managed entity, or without them as a flat row.
+     */
+    @Override
+    default Pet findById(int id, Set<Association> associations) throws DataAccessException {
+        if (associations.contains(Association.VISITS)) {
+            return findById(id);
+        }
+        List<Pet> pets = petsWithIds(List.of(id), associations);
+        if (pets.isEmpty()) {
+            throw new ObjectRetrievalFailureException(Pet.class, id);
+        }
+        return pets.get(0);
+    }
+
+    /**
+     * Cuts the page on pet ids first, as a row limit on the joined query would count visits, then reads the pets
+     * with their types, and their visits if asked for, as flat rows rather than as managed entities.
+     */
+    @Override
+    default Collection<Pet> findAll(int afterId, int limit, Set<Association> associations)
+        throws DataAccessException {
+        return petsWithIds(findIdsAfter(afterId, Limit.of(limit)), associations);
+    }
+
+    private List<Pet> petsWithIds(List<Integer> ids, Set<Association> associations) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (!associations.contains(Association.VISITS)) {
+            return ListingProjections.pets(findRowsWithoutVisitsByIdIn(ids));
+        }
+        return ListingProjections.pets(findRowsByIdIn(ids));
+    }
+
+    @Query("SELECT pet.id FROM Pet pet WHERE pet.id > :afterId ORDER BY pet.id")
+    List<Integer> findIdsAfter(@Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT pet.id AS petId, pet.name AS petName, pet.birthDate AS birthDate, petType.id AS typeId, " +
+        "petType.name AS typeName, pet.owner.id AS ownerId, visit.id AS visitId, visit.date AS visitDate, " +
+        "visit.description AS visitDescription " +
+        "FROM Pet pet JOIN pet.type petType LEFT JOIN pet.visits visit WHERE pet.id IN :ids ORDER BY pet.id")
+    List<PetRow> findRowsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    /**
+     * Reads the pets with their types; the visit columns are not selected, so they read as <code>null</code>.
+     */
+    @Query("SELECT pet.id AS petId, pet.name AS petName, pet.birthDate AS birthDate, petType.id AS typeId, " +
+        "petType.name AS typeName, pet.owner.id AS ownerId " +
+        "FROM Pet pet JOIN pet.type petType WHERE pet.id IN :ids ORDER BY pet.id")
+    List<PetRow> findRowsWithoutVisitsByIdIn(@Param("ids") Collection<Integer> ids);
+
 }
@@ -16,6 +16,8 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
@@ -35,12 +37,29 @@ public class SpringDataPetRepositoryImpl implements PetRepositoryOverride {
 
 	@Override
 	public void delete(Pet pet) {
-		String petId = pet.getId().toString();
-		this.em.createQuery("DELETE FROM Visit visit WHERE pet.id=" + petId).executeUpdate();
-		this.em.createQuery("DELETE FROM Pet pet WHERE id=" + petId).executeUpdate();
+		this.em.createQuery("DELETE FROM Visit visit WHERE visit.pet.id = :petId")
+			.setParameter("petId", pet.getId())
+			.executeUpdate();
+		this.em.createQuery("DELETE FROM Pet pet WHERE pet.id = :petId")
+			.setParameter("petId", pet.getId())
+			.executeUpdate();
         if (em.contains(pet)) {
             em.remove(pet);
         }
 	}
 
+    /**
+     * Persists the new pets and merges the others; the inserts are sent in JDBC batches when Hibernate flushes them.
+     */
+    @Override
+    public void saveAll(Collection<Pet> pets) {
+        for (Pet pet : pets) {
+            if (pet.isNew()) {
+                this.em.persist(pet);
+            } else {
+                this.em.merge(pet);
+            }
+        }
+    }
+
 }
@@ -16,10 +16,21 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.repository.PetTypeRepository;
+import org.springframework.samples.petclinic.repository.springdatajpa.ListingProjections.NamedRow;
 
 /**
  * @author Vitaliy Fedoriv
@@ -29,4 +40,18 @@ import org.springframework.samples.petclinic.repository.PetTypeRepository;
 @Profile("spring-data-jpa")
 public interface SpringDataPetTypeRepository extends PetTypeRepository, Repository<PetType, Integer>, PetTypeRepositoryOverride {
 
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    PetType findByName(String name) throws DataAccessException;
+
+    /**
+     * Reads the page as ID and name columns rather than as managed entities.
+     */
+    @Override
+    default Collection<PetType> findAll(int afterId, int limit) throws DataAccessException {
+        return ListingProjections.named(findByIdGreaterThanOrderById(afterId, Limit.of(limit)), PetType::new);
+    }
+
+    List<NamedRow> findByIdGreaterThanOrderById(int afterId, Limit limit);
+
 }
@@ -16,10 +16,22 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.repository.SpecialtyRepository;
+import org.springframework.samples.petclinic.repository.springdatajpa.ListingProjections.NamedRow;
 
 
 /**
@@ -30,4 +42,18 @@ import org.springframework.samples.petclinic.repository.SpecialtyRepository;
 @Profile("spring-data-jpa")
 public interface SpringDataSpecialtyRepository extends SpecialtyRepository, Repository<Specialty, Integer>, SpecialtyRepositoryOverride {
 
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Specialty> findSpecialtiesByNameIn(Set<String> names);
+
+    /**
+     * Reads the page as ID and name columns rather than as managed entities.
+     */
+    @Override
+    default Collection<Specialty> findAll(int afterId, int limit) throws DataAccessException {
+        return ListingProjections.named(findByIdGreaterThanOrderById(afterId, Limit.of(limit)), Specialty::new);
+    }
+
+    List<NamedRow> findByIdGreaterThanOrderById(int afterId, Limit limit);
+
 }
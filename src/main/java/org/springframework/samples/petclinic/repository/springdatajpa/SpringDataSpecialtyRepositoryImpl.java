@@ -19,6 +19,7 @@ package org.springframework.samples.petclinic.repository.springdatajpa;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import org.hibernate.query.NativeQuery;
 import org.springframework.context.annotation.Profile;
 import org.springframework.samples.petclinic.model.Specialty;
 
@@ -37,7 +38,10 @@ public class SpringDataSpecialtyRepositoryImpl implements SpecialtyRepositoryOve
 	public void delete(Specialty specialty) {
         this.em.remove(this.em.contains(specialty) ? specialty : this.em.merge(specialty));
 		Integer specId = specialty.getId();
-		this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId).executeUpdate();
+		// only the cached vet specialty collections are evicted, not every second-level cache region
+		this.em.createNativeQuery("DELETE FROM vet_specialties WHERE specialty_id=" + specId).unwrap(NativeQuery.class)
+			.addSynchronizedQuerySpace("vet_specialties")
+			.executeUpdate();
 		this.em.createQuery("DELETE FROM Specialty specialty WHERE id=" + specId).executeUpdate();
 	}
 
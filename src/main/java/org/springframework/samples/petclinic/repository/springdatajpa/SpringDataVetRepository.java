@@ -15,10 +15,19 @@
  */
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.repository.VetRepository;
+import org.springframework.samples.petclinic.repository.springdatajpa.ListingProjections.VetRow;
 
 /**
  * Spring Data JPA specialization of the {@link VetRepository} interface
@@ -28,5 +37,28 @@ import org.springframework.samples.petclinic.repository.VetRepository;
  */
 
 @Profile("spring-data-jpa")
-public interface SpringDataVetRepository extends VetRepository, Repository<Vet, Integer> {
+public interface SpringDataVetRepository extends VetRepository, Repository<Vet, Integer>, VetRepositoryOverride {
+
+    @Override
+    @EntityGraph(Vet.WITH_SPECIALTIES)
+    Collection<Vet> findAll() throws DataAccessException;
+
+    /**
+     * Cuts the page on vet ids first, as a row limit on the joined query would count specialties, then reads the
+     * vets with their specialties as flat rows rather than as managed entities.
+     */
+    @Override
+    default Collection<Vet> findAll(int afterId, int limit) throws DataAccessException {
+        List<Integer> ids = findIdsAfter(afterId, Limit.of(limit));
+        return ids.isEmpty() ? List.of() : ListingProjections.vets(findRowsByIdIn(ids));
+    }
+
+    @Query("SELECT vet.id FROM Vet vet WHERE vet.id > :afterId ORDER BY vet.id")
+    List<Integer> findIdsAfter(@Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT vet.id AS id, vet.firstName AS firstName, vet.lastName AS lastName, " +
+        "specialty.id AS specialtyId, specialty.name AS specialtyName " +
+        "FROM Vet vet LEFT JOIN vet.specialties specialty WHERE vet.id IN :ids ORDER BY vet.id")
+    List<VetRow> findRowsByIdIn(@Param("ids") Collection<Integer> ids);
+
 }
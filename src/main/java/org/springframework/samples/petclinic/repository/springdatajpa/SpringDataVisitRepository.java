@@ -15,10 +15,19 @@
  */
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.samples.petclinic.model.Visit;
 import org.springframework.samples.petclinic.repository.VisitRepository;
+import org.springframework.samples.petclinic.repository.springdatajpa.ListingProjections.VisitRow;
 
 /**
  * Spring Data JPA specialization of the {@link VisitRepository} interface
@@ -29,4 +38,21 @@ import org.springframework.samples.petclinic.repository.VisitRepository;
 
 @Profile("spring-data-jpa")
 public interface SpringDataVisitRepository extends VisitRepository, Repository<Visit, Integer>, VisitRepositoryOverride {
+
+    @Override
+    @EntityGraph(Visit.WITH_PET)
+    Visit findById(int id) throws DataAccessException;
+
+    /**
+     * Reads the page as the visit columns and the pet ID rather than as managed entities.
+     */
+    @Override
+    default Collection<Visit> findAll(int afterId, int limit) throws DataAccessException {
+        return ListingProjections.visits(findRowsAfter(afterId, Limit.of(limit)));
+    }
+
+    @Query("SELECT visit.id AS id, visit.date AS date, visit.description AS description, visit.pet.id AS petId " +
+        "FROM Visit visit WHERE visit.id > :afterId ORDER BY visit.id")
+    List<VisitRow> findRowsAfter(@Param("afterId") int afterId, Limit limit);
+
 }
@@ -16,12 +16,18 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.function.Consumer;
+
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.jpa.JpaStatelessReads;
+import org.springframework.samples.petclinic.repository.jpa.JpaStreams;
 
 /**
  * @author Vitaliy Fedoriv
@@ -34,6 +40,9 @@ public class SpringDataVisitRepositoryImpl implements VisitRepositoryOverride {
 	@PersistenceContext
     private EntityManager em;
 
+    @Value("${petclinic.streaming.fetch-size:500}")
+    private int fetchSize;
+
 	@Override
 	public void delete(Visit visit) throws DataAccessException {
 		String visitId = visit.getId().toString();
@@ -43,5 +52,32 @@ public class SpringDataVisitRepositoryImpl implements VisitRepositoryOverride {
         }
 	}
 
+	@Override
+	public void streamAll(Consumer<? super Visit> action) throws DataAccessException {
+		JpaStreams.forEach(this.em, this.em.createQuery("SELECT v FROM Visit v ORDER BY v.id", Visit.class),
+			this.fetchSize, action);
+	}
+
+    /**
+     * Reads all visits with their pets through a stateless session, as this bulk read is never written back.
+     */
+    @Override
+    public Collection<Visit> findAll() throws DataAccessException {
+        return JpaStatelessReads.list(this.em, "SELECT v FROM Visit v JOIN FETCH v.pet", Visit.class);
+    }
+
+    /**
+     * Persists the new visits and merges the others; the inserts are sent in JDBC batches when Hibernate flushes them.
+     */
+    @Override
+    public void saveAll(Collection<Visit> visits) {
+        for (Visit visit : visits) {
+            if (visit.isNew()) {
+                this.em.persist(visit);
+            } else {
+                this.em.merge(visit);
+            }
+        }
+    }
 
 }
@@ -16,6 +16,9 @@
 
 package org.springframework.samples.petclinic.repository.springdatajpa;
 
+import java.util.Collection;
+import java.util.function.Consumer;
+
 import org.springframework.context.annotation.Profile;
 import org.springframework.samples.petclinic.model.Visit;
 
@@ -29,4 +32,10 @@ public interface VisitRepositoryOverride {
 	
 	void delete(Visit visit);
 
+	void saveAll(Collection<Visit> visits);
+
+	Collection<Visit> findAll();
+
+	void streamAll(Consumer<? super Visit> action);
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.rest.advice;
+
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+/**
+ * Writes a JSON response body with the Jackson filters a handler left in the {@link #FILTERS_ATTRIBUTE} request
+ * attribute, so that the properties a client did not ask for are never serialized.
+ */
+@ControllerAdvice
+public class FieldsetResponseBodyAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    public static final String FILTERS_ATTRIBUTE = FieldsetResponseBodyAdvice.class.getName() + ".filters";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+            && servletRequest.getServletRequest().getAttribute(FILTERS_ATTRIBUTE) instanceof FilterProvider filters) {
+            bodyContainer.setFilters(filters);
+        }
+    }
+
+}
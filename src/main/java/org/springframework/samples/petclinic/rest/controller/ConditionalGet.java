@@ -0,0 +1,89 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.rest.controller;
+
+import java.util.function.Supplier;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Answers conditional GETs from a version read off {@link ClinicService}, before the resource is loaded.
+ * <p>
+ * The entity tag of a response is its version, prefixed with a value drawn when the application starts, as versions
+ * are only counted in memory: a tag issued before a restart, or by another instance, never matches. A version covers
+ * every resource built from the same data, so that one tag can serve a resource and each page of its listing. The
+ * representations of a resource that differ for the same version, such as a sparse fieldset or a gzip-compressed
+ * body, add a variant of their own to the tag, so that the tags stay strong.
+ */
+final class ConditionalGet {
+
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    private ConditionalGet() {
+    }
+
+    static String etag(long version) {
+        return etag(version, "");
+    }
+
+    /**
+     * Returns the entity tag of one variant of the representations built from the given version.
+     *
+     * @param variant sets the variant apart from the others, empty for the default representation
+     */
+    static String etag(long version, String variant) {
+        return "\"" + EPOCH + "-" + version + variant + "\"";
+    }
+
+    /**
+     * Answers <code>304 Not Modified</code>, or <code>412 Precondition Failed</code> for an unmet
+     * <code>If-Match</code>, when the request preconditions say so; otherwise builds the response and tags it if
+     * successful.
+     *
+     * @param version the version of the data the response is built from, read before building it
+     */
+    static <T> ResponseEntity<T> ifNoneMatch(long version, Supplier<ResponseEntity<T>> builder) {
+        return ifNoneMatch(version, "", builder);
+    }
+
+    /**
+     * Same as {@link #ifNoneMatch(long, Supplier)} for a variant of the representation, see {@link #etag(long, String)}.
+     */
+    static <T> ResponseEntity<T> ifNoneMatch(long version, String variant, Supplier<ResponseEntity<T>> builder) {
+        String etag = etag(version, variant);
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        if (new ServletWebRequest(attributes.getRequest(), attributes.getResponse()).checkNotModified(etag)) {
+            return ResponseEntity.status(attributes.getResponse().getStatus()).eTag(etag).build();
+        }
+        return tagged(builder.get(), etag);
+    }
+
+    /**
+     * Adds the given entity tag to a successful response.
+     */
+    static <T> ResponseEntity<T> tagged(ResponseEntity<T> response, String etag) {
+        if (response == null || response.getStatusCode() != HttpStatus.OK) {
+            return response;
+        }
+        return ResponseEntity.ok().headers(response.getHeaders()).eTag(etag).body(response.getBody());
+    }
+
+}
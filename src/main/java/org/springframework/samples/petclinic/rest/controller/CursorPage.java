@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.rest.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.samples.petclinic.model.BaseEntity;
+
+/**
+ * One page of a keyset-paginated listing. The page is read with one extra row, so whether another page follows is
+ * known without counting; in that case the ID of the last item is handed out as the cursor of the next page in the
+ * <code>X-Next-Cursor</code> response header.
+ *
+ * @param <T> the type of the listed entities, ordered by ID
+ */
+final class CursorPage<T extends BaseEntity> {
+
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final List<T> content;
+
+    private final Integer nextCursor;
+
+    private CursorPage(List<T> content, Integer nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Reads a page of at most <code>limit</code> items.
+     *
+     * @param limit the page size requested by the client
+     * @param query reads up to the given number of items following the cursor, ordered by ID
+     */
+    static <T extends BaseEntity> CursorPage<T> fetch(int limit, IntFunction<? extends Collection<? extends T>> query) {
+        List<T> content = new ArrayList<>(query.apply(limit + 1));
+        if (content.size() <= limit) {
+            return new CursorPage<>(content, null);
+        }
+        content.subList(limit, content.size()).clear();
+        return new CursorPage<>(content, content.get(limit - 1).getId());
+    }
+
+    static int after(Integer after) {
+        return after == null ? 0 : after;
+    }
+
+    List<T> getContent() {
+        return this.content;
+    }
+
+    boolean isEmpty() {
+        return this.content.isEmpty();
+    }
+
+    HttpHeaders headers() {
+        HttpHeaders headers = new HttpHeaders();
+        if (this.nextCursor != null) {
+            headers.set(NEXT_CURSOR_HEADER, this.nextCursor.toString());
+        }
+        return headers;
+    }
+
+}
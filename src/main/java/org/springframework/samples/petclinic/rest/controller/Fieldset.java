@@ -0,0 +1,226 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.rest.controller;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+import org.springframework.samples.petclinic.config.JacksonConfig;
+import org.springframework.samples.petclinic.model.Association;
+import org.springframework.samples.petclinic.rest.advice.FieldsetResponseBodyAdvice;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.VetDto;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * The parts of a representation a client asked for with the <code>fields</code> and <code>include</code> query
+ * parameters, and the associations that need reading for them.
+ * <p>
+ * <code>fields</code> names the properties returned, the ID always being one of them; <code>include</code> names
+ * the associations embedded. An association is read and embedded only if it is both included and, when fields are
+ * named, among them. Either parameter left out stands for everything, so that a request with neither gets the whole
+ * representation. An association left out is left out of the representations embedded as well, such as the visits
+ * of the pets embedded in an owner.
+ */
+final class Fieldset {
+
+    enum Representation {
+
+        OWNER(OwnerDto.class, List.of("id", "firstName", "lastName", "address", "city", "telephone", "pets"),
+            Map.of("pets", EnumSet.of(Association.PETS),
+                "pets.visits", EnumSet.of(Association.PETS, Association.VISITS)),
+            List.of(new Embedding(Association.PETS, OwnerDto.class, "pets"),
+                new Embedding(Association.VISITS, PetDto.class, "visits"))),
+
+        PET(PetDto.class, List.of("id", "name", "birthDate", "type", "ownerId", "visits"),
+            Map.of("visits", EnumSet.of(Association.VISITS)),
+            List.of(new Embedding(Association.VISITS, PetDto.class, "visits"))),
+
+        VET(VetDto.class, List.of("id", "firstName", "lastName", "specialties"),
+            Map.of("specialties", EnumSet.of(Association.SPECIALTIES)),
+            List.of(new Embedding(Association.SPECIALTIES, VetDto.class, "specialties")));
+
+        private final Class<?> type;
+
+        private final List<String> properties;
+
+        private final Map<String, Set<Association>> includes;
+
+        private final List<Embedding> embeddings;
+
+        Representation(Class<?> type, List<String> properties, Map<String, Set<Association>> includes,
+                       List<Embedding> embeddings) {
+            this.type = type;
+            this.properties = properties;
+            this.includes = includes;
+            this.embeddings = embeddings;
+        }
+
+    }
+
+    /**
+     * An association, as embedded in a property of a representation.
+     */
+    private record Embedding(Association association, Class<?> in, String property) {
+    }
+
+    private final Representation representation;
+
+    private final Set<String> properties;
+
+    private final Map<Class<?>, Set<String>> omitted;
+
+    private final Set<Association> associations;
+
+    private final boolean sparse;
+
+    private Fieldset(Representation representation, Set<String> properties, Map<Class<?>, Set<String>> omitted,
+                     Set<Association> associations, boolean sparse) {
+        this.representation = representation;
+        this.properties = properties;
+        this.omitted = omitted;
+        this.associations = associations;
+        this.sparse = sparse;
+    }
+
+    /**
+     * Parses the fieldset asked for.
+     *
+     * @throws IllegalArgumentException if a field or association is unknown to the representation
+     */
+    static Fieldset of(Representation representation, List<String> fields, List<String> include) {
+        Set<String> properties = new HashSet<>(representation.properties);
+        if (fields != null) {
+            properties = named(fields, "field", representation.properties::contains);
+            properties.add("id");
+        }
+        Set<String> included = representation.includes.keySet();
+        if (include != null) {
+            included = named(include, "association", representation.includes::containsKey);
+        }
+        Set<Association> associations = EnumSet.noneOf(Association.class);
+        for (String name : included) {
+            associations.addAll(representation.includes.get(name));
+        }
+        for (Embedding embedding : representation.embeddings) {
+            if (embedding.in() == representation.type && !properties.contains(embedding.property())) {
+                associations.remove(embedding.association());
+            }
+        }
+        if (representation == Representation.OWNER && !associations.contains(Association.PETS)) {
+            // the visits embedded in an owner are those of its pets
+            associations.remove(Association.VISITS);
+        }
+        Map<Class<?>, Set<String>> omitted = new HashMap<>();
+        for (Embedding embedding : representation.embeddings) {
+            if (!associations.contains(embedding.association())) {
+                properties.remove(embedding.property());
+                omitted.computeIfAbsent(embedding.in(), type -> new HashSet<>()).add(embedding.property());
+            }
+        }
+        return new Fieldset(representation, Collections.unmodifiableSet(properties), omitted,
+            Collections.unmodifiableSet(associations), fields != null || include != null);
+    }
+
+    private static Set<String> named(List<String> names, String kind, Predicate<String> known) {
+        Set<String> named = new HashSet<>();
+        for (String name : names) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!known.test(trimmed)) {
+                throw new IllegalArgumentException("Unknown " + kind + " '" + trimmed + "'");
+            }
+            named.add(trimmed);
+        }
+        return named;
+    }
+
+    Set<Association> associations() {
+        return this.associations;
+    }
+
+    boolean isSparse() {
+        return this.sparse;
+    }
+
+    /**
+     * Returns the variant of the entity tag for this fieldset, see {@link ConditionalGet#etag(long, String)}: empty
+     * for the whole representation, otherwise the properties and associations kept, one bit each.
+     */
+    String tag() {
+        if (!this.sparse) {
+            return "";
+        }
+        long bits = 0;
+        List<String> all = this.representation.properties;
+        for (int i = 0; i < all.size(); i++) {
+            if (this.properties.contains(all.get(i))) {
+                bits |= 1L << i;
+            }
+        }
+        for (Association association : this.associations) {
+            bits |= 1L << (all.size() + association.ordinal());
+        }
+        return "-f" + Long.toString(bits, Character.MAX_RADIX);
+    }
+
+    /**
+     * Has the body of the current response trimmed to this fieldset, if it is sparse.
+     */
+    void trimResponse() {
+        if (this.sparse) {
+            RequestContextHolder.currentRequestAttributes().setAttribute(FieldsetResponseBodyAdvice.FILTERS_ATTRIBUTE,
+                filters(), RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private FilterProvider filters() {
+        Class<?> type = this.representation.type;
+        Set<String> properties = this.properties;
+        Map<Class<?>, Set<String>> omitted = this.omitted;
+        return new SimpleFilterProvider().addFilter(JacksonConfig.FIELDSET_FILTER, new SimpleBeanPropertyFilter() {
+            @Override
+            public void serializeAsField(Object pojo, JsonGenerator jgen, SerializerProvider provider,
+                                         PropertyWriter writer) throws Exception {
+                boolean shown = pojo.getClass() == type ? properties.contains(writer.getName())
+                    : !omitted.getOrDefault(pojo.getClass(), Set.of()).contains(writer.getName());
+                if (shown) {
+                    writer.serializeAsField(pojo, jgen, provider);
+                } else if (!jgen.canOmitFields()) {
+                    writer.serializeAsOmittedField(pojo, jgen, provider);
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.rest.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.config.CachingConfig;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Caches listings of read-mostly resources as serialized JSON, and gzip-compressed JSON unless disabled, held off the
+ * heap in direct buffers. A cached page is copied from its buffer to the servlet output stream through a small
+ * per-thread transfer buffer, so serving it neither maps nor serializes, and its body is not retained on the heap.
+ * <p>
+ * The caches are declared in {@link CachingConfig}, bounded by the bytes of the pages they hold, and emptied by the
+ * service writes that change their resources. The direct memory of an evicted page is only released once its buffer
+ * is collected, so the JVM's <code>-XX:MaxDirectMemorySize</code> has to leave room for the three caches at their
+ * bound plus the pages evicted since the last collection; a direct allocation beyond it triggers a collection first.
+ */
+@Component
+class JsonResponseCache {
+
+    private static final ThreadLocal<byte[]> transferBuffer = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    private final CacheManager cacheManager;
+
+    private final ObjectMapper objectMapper;
+
+    private final boolean gzip;
+
+    JsonResponseCache(CacheManager cacheManager, ObjectMapper objectMapper,
+                      @Value("${petclinic.cache.responses.gzip:true}") boolean gzip) {
+        this.cacheManager = cacheManager;
+        this.objectMapper = objectMapper;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes the page of a listing from the given cache, building and caching it first if missing, unless the request
+     * preconditions are answered by the version of the listing, see {@link ConditionalGet}; the gzip-compressed page is
+     * tagged as a variant of its own. Only successful responses are cached; others are returned as built.
+     *
+     * @return <code>null</code> once the cached page has been written, which tells Spring MVC the request is handled
+     */
+    <T> ResponseEntity<T> list(String cacheName, long version, Integer after, Integer limit,
+                               Supplier<ResponseEntity<T>> builder) {
+        String acceptEncoding = currentRequest().getRequest().getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean compressed = this.gzip && acceptsGzip(acceptEncoding);
+        String variant = compressed ? "-gz" : "";
+        return ConditionalGet.ifNoneMatch(version, variant, () -> {
+            Cache cache = this.cacheManager.getCache(cacheName);
+            Object key = Arrays.asList(version, after, limit);
+            CachedResponse cached = cache.get(key, CachedResponse.class);
+            if (cached == null) {
+                ResponseEntity<T> response = builder.get();
+                if (response.getStatusCode() != HttpStatus.OK) {
+                    return response;
+                }
+                cached = new CachedResponse(response.getHeaders(), serialize(response.getBody()), this.gzip);
+                cache.put(key, cached);
+            }
+            write(cached, compressed, ConditionalGet.etag(version, variant));
+            return null;
+        });
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return this.objectMapper.writeValueAsBytes(body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        return (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+    }
+
+    private void write(CachedResponse cached, boolean compressed, String etag) {
+        HttpServletResponse response = currentRequest().getResponse();
+        ByteBuffer body = (compressed ? cached.gzipped : cached.json).duplicate();
+
+        response.setStatus(HttpStatus.OK.value());
+        cached.headers.forEach((name, values) -> {
+            response.setHeader(name, values.get(0));
+            values.stream().skip(1).forEach(value -> response.addHeader(name, value));
+        });
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (compressed) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.remaining());
+        try {
+            OutputStream out = response.getOutputStream();
+            byte[] chunk = transferBuffer.get();
+            while (body.hasRemaining()) {
+                int length = Math.min(body.remaining(), chunk.length);
+                body.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+            out.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Tells whether an <code>Accept-Encoding</code> header accepts gzip, as named or through <code>*</code>, with a
+     * non-zero quality value. A coding listed with <code>q=0</code>, or with a quality that does not parse, is refused.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    quality = quality(parameter.substring(2).trim());
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        Double quality = gzip != null ? gzip : any;
+        return quality != null && quality > 0;
+    }
+
+    private static double quality(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static ByteBuffer offHeap(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        return buffer.flip().asReadOnlyBuffer();
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * A page as served: its own headers, such as the next cursor, and its body; only these few objects are on the heap.
+     */
+    private static final class CachedResponse implements CachingConfig.ByteSized {
+
+        private final HttpHeaders headers;
+
+        private final ByteBuffer json;
+
+        private final ByteBuffer gzipped;
+
+        CachedResponse(HttpHeaders headers, byte[] json, boolean gzip) {
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.json = offHeap(json);
+            this.gzipped = gzip ? offHeap(gzip(json)) : null;
+        }
+
+        @Override
+        public int byteSize() {
+            return this.json.capacity() + (this.gzipped == null ? 0 : this.gzipped.capacity());
+        }
+
+    }
+
+}
@@ -16,12 +16,16 @@
 
 package org.springframework.samples.petclinic.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.mapper.OwnerMapper;
 import org.springframework.samples.petclinic.mapper.PetMapper;
 import org.springframework.samples.petclinic.mapper.VisitMapper;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
@@ -31,21 +35,23 @@ import org.springframework.samples.petclinic.rest.dto.*;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import jakarta.transaction.Transactional;
 
-import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author Vitaliy Fedoriv
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + CursorPage.NEXT_CURSOR_HEADER)
 @RequestMapping("/api")
 public class OwnerRestController implements OwnersApi {
 
@@ -57,39 +63,67 @@ public class OwnerRestController implements OwnersApi {
 
     private final VisitMapper visitMapper;
 
+    private final ObjectMapper objectMapper;
+
     public OwnerRestController(ClinicService clinicService,
                                OwnerMapper ownerMapper,
                                PetMapper petMapper,
-                               VisitMapper visitMapper) {
+                               VisitMapper visitMapper,
+                               ObjectMapper objectMapper) {
         this.clinicService = clinicService;
         this.ownerMapper = ownerMapper;
         this.petMapper = petMapper;
         this.visitMapper = visitMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Streams all owners with their pets and visits as NDJSON, read from a database cursor, when the client asks for
+     * <code>application/x-ndjson</code> instead of a JSON page.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @GetMapping(value = "/owners", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamOwners() {
+        return NdjsonResponse.ok(this.objectMapper,
+            writer -> this.clinicService.streamAllOwners(owner -> writer.accept(this.ownerMapper.toOwnerDto(owner))));
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<List<OwnerDto>> listOwners(String lastName) {
-        Collection<Owner> owners;
-        if (lastName != null) {
-            owners = this.clinicService.findOwnerByLastName(lastName);
-        } else {
-            owners = this.clinicService.findAllOwners();
-        }
-        if (owners.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(ownerMapper.toOwnerDtoCollection(owners), HttpStatus.OK);
+    public ResponseEntity<List<OwnerDto>> listOwners(String lastName, Integer after, Integer limit,
+                                                     List<String> fields, List<String> include) {
+        Fieldset fieldset = Fieldset.of(Fieldset.Representation.OWNER, fields, include);
+        Set<Association> associations = fieldset.associations();
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Owner.class), fieldset.tag(), () -> {
+            CursorPage<Owner> page;
+            if (lastName != null) {
+                page = CursorPage.fetch(limit, n -> this.clinicService.findOwnerByLastName(lastName,
+                    CursorPage.after(after), n, associations));
+            } else {
+                page = CursorPage.fetch(limit,
+                    n -> this.clinicService.findAllOwners(CursorPage.after(after), n, associations));
+            }
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            fieldset.trimResponse();
+            return new ResponseEntity<>(ownerMapper.toOwnerDtoCollection(page.getContent(), associations),
+                page.headers(), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<OwnerDto> getOwner(Integer ownerId) {
-        Owner owner = this.clinicService.findOwnerById(ownerId);
-        if (owner == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(ownerMapper.toOwnerDto(owner), HttpStatus.OK);
+    public ResponseEntity<OwnerDto> getOwner(Integer ownerId, List<String> fields, List<String> include) {
+        Fieldset fieldset = Fieldset.of(Fieldset.Representation.OWNER, fields, include);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getOwnerVersion(ownerId), fieldset.tag(), () -> {
+            Owner owner = this.clinicService.findOwnerById(ownerId, fieldset.associations());
+            if (owner == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            fieldset.trimResponse();
+            return new ResponseEntity<>(ownerMapper.toOwnerDto(owner, fieldset.associations()), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
@@ -111,13 +145,12 @@ public class OwnerRestController implements OwnersApi {
         if (currentOwner == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        currentOwner.setAddress(ownerFieldsDto.getAddress());
-        currentOwner.setCity(ownerFieldsDto.getCity());
-        currentOwner.setFirstName(ownerFieldsDto.getFirstName());
-        currentOwner.setLastName(ownerFieldsDto.getLastName());
-        currentOwner.setTelephone(ownerFieldsDto.getTelephone());
-        this.clinicService.saveOwner(currentOwner);
-        return new ResponseEntity<>(ownerMapper.toOwnerDto(currentOwner), HttpStatus.NO_CONTENT);
+        // the owner found may be the cached aggregate, so the change goes to a copy keeping its pets
+        Owner owner = ownerMapper.toOwner(ownerFieldsDto);
+        owner.setId(currentOwner.getId());
+        owner.setPets(currentOwner.getPets());
+        this.clinicService.saveOwner(owner);
+        return new ResponseEntity<>(ownerMapper.toOwnerDto(owner), HttpStatus.NO_CONTENT);
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
@@ -168,16 +201,18 @@ public class OwnerRestController implements OwnersApi {
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<PetDto> getOwnersPet(Integer ownerId, Integer petId) {
-        Owner owner = this.clinicService.findOwnerById(ownerId);
-        Pet pet = this.clinicService.findPetById(petId);
-        if (owner == null || pet == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        } else {
-            if (!pet.getOwner().equals(owner)) {
-                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Pet.class), () -> {
+            Owner owner = this.clinicService.findOwnerById(ownerId);
+            Pet pet = this.clinicService.findPetById(petId);
+            if (owner == null || pet == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
             } else {
-                return new ResponseEntity<>(petMapper.toPetDto(pet), HttpStatus.OK);
+                if (!pet.getOwner().getId().equals(owner.getId())) {
+                    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                } else {
+                    return new ResponseEntity<>(petMapper.toPetDto(pet), HttpStatus.OK);
+                }
             }
-        }
+        });
     }
 }
@@ -36,7 +36,7 @@ import java.util.List;
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + CursorPage.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class PetRestController implements PetsApi {
 
@@ -51,22 +51,33 @@ public class PetRestController implements PetsApi {
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<PetDto> getPet(Integer petId) {
-        PetDto pet = petMapper.toPetDto(this.clinicService.findPetById(petId));
-        if (pet == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(pet, HttpStatus.OK);
+    public ResponseEntity<PetDto> getPet(Integer petId, List<String> fields, List<String> include) {
+        Fieldset fieldset = Fieldset.of(Fieldset.Representation.PET, fields, include);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Pet.class), fieldset.tag(), () -> {
+            Pet pet = this.clinicService.findPetById(petId, fieldset.associations());
+            if (pet == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            fieldset.trimResponse();
+            return new ResponseEntity<>(petMapper.toPetDto(pet, fieldset.associations()), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<List<PetDto>> listPets() {
-        List<PetDto> pets = new ArrayList<>(petMapper.toPetsDto(this.clinicService.findAllPets()));
-        if (pets.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(pets, HttpStatus.OK);
+    public ResponseEntity<List<PetDto>> listPets(Integer after, Integer limit, List<String> fields,
+                                                 List<String> include) {
+        Fieldset fieldset = Fieldset.of(Fieldset.Representation.PET, fields, include);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Pet.class), fieldset.tag(), () -> {
+            CursorPage<Pet> page = CursorPage.fetch(limit,
+                n -> this.clinicService.findAllPets(CursorPage.after(after), n, fieldset.associations()));
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            fieldset.trimResponse();
+            return new ResponseEntity<>(new ArrayList<>(petMapper.toPetsDto(page.getContent(),
+                fieldset.associations())), page.headers(), HttpStatus.OK);
+        });
     }
 
 
@@ -19,6 +19,7 @@ package org.springframework.samples.petclinic.rest.controller;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.config.CachingConfig;
 import org.springframework.samples.petclinic.mapper.PetTypeMapper;
 import org.springframework.samples.petclinic.model.PetType;
 import org.springframework.samples.petclinic.rest.api.PettypesApi;
@@ -35,37 +36,45 @@ import java.util.List;
 import java.util.Objects;
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + CursorPage.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class PetTypeRestController implements PettypesApi {
 
     private final ClinicService clinicService;
     private final PetTypeMapper petTypeMapper;
+    private final JsonResponseCache responseCache;
 
 
-    public PetTypeRestController(ClinicService clinicService, PetTypeMapper petTypeMapper) {
+    public PetTypeRestController(ClinicService clinicService, PetTypeMapper petTypeMapper,
+                                 JsonResponseCache responseCache) {
         this.clinicService = clinicService;
         this.petTypeMapper = petTypeMapper;
+        this.responseCache = responseCache;
     }
 
     @PreAuthorize("hasAnyRole(@roles.OWNER_ADMIN, @roles.VET_ADMIN)")
     @Override
-    public ResponseEntity<List<PetTypeDto>> listPetTypes() {
-        List<PetType> petTypes = new ArrayList<>(this.clinicService.findAllPetTypes());
-        if (petTypes.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(petTypeMapper.toPetTypeDtos(petTypes), HttpStatus.OK);
+    public ResponseEntity<List<PetTypeDto>> listPetTypes(Integer after, Integer limit) {
+        return this.responseCache.list(CachingConfig.PET_TYPE_RESPONSES, this.clinicService.getVersion(PetType.class), after, limit, () -> {
+            CursorPage<PetType> page =
+                CursorPage.fetch(limit, n -> this.clinicService.findAllPetTypes(CursorPage.after(after), n));
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(petTypeMapper.toPetTypeDtos(page.getContent()), page.headers(), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasAnyRole(@roles.OWNER_ADMIN, @roles.VET_ADMIN)")
     @Override
     public ResponseEntity<PetTypeDto> getPetType(Integer petTypeId) {
-        PetType petType = this.clinicService.findPetTypeById(petTypeId);
-        if (petType == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(petTypeMapper.toPetTypeDto(petType), HttpStatus.OK);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(PetType.class), () -> {
+            PetType petType = this.clinicService.findPetTypeById(petTypeId);
+            if (petType == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(petTypeMapper.toPetTypeDto(petType), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
@@ -89,9 +98,11 @@ public class PetTypeRestController implements PettypesApi {
         if (currentPetType == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        currentPetType.setName(petTypeDto.getName());
-        this.clinicService.savePetType(currentPetType);
-        return new ResponseEntity<>(petTypeMapper.toPetTypeDto(currentPetType), HttpStatus.NO_CONTENT);
+        // the pet type found may be the cached instance, so the change goes to a copy
+        PetType petType = petTypeMapper.toPetType(petTypeDto);
+        petType.setId(currentPetType.getId());
+        this.clinicService.savePetType(petType);
+        return new ResponseEntity<>(petTypeMapper.toPetTypeDto(petType), HttpStatus.NO_CONTENT);
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
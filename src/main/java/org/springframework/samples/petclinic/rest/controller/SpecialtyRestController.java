@@ -19,6 +19,7 @@ package org.springframework.samples.petclinic.rest.controller;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.config.CachingConfig;
 import org.springframework.samples.petclinic.mapper.SpecialtyMapper;
 import org.springframework.samples.petclinic.model.Specialty;
 import org.springframework.samples.petclinic.rest.api.SpecialtiesApi;
@@ -37,7 +38,7 @@ import java.util.List;
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + CursorPage.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class SpecialtyRestController implements SpecialtiesApi {
 
@@ -45,30 +46,39 @@ public class SpecialtyRestController implements SpecialtiesApi {
 
     private final SpecialtyMapper specialtyMapper;
 
-    public SpecialtyRestController(ClinicService clinicService, SpecialtyMapper specialtyMapper) {
+    private final JsonResponseCache responseCache;
+
+    public SpecialtyRestController(ClinicService clinicService, SpecialtyMapper specialtyMapper,
+                                   JsonResponseCache responseCache) {
         this.clinicService = clinicService;
         this.specialtyMapper = specialtyMapper;
+        this.responseCache = responseCache;
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
-    public ResponseEntity<List<SpecialtyDto>> listSpecialties() {
-        List<SpecialtyDto> specialties = new ArrayList<>();
-        specialties.addAll(specialtyMapper.toSpecialtyDtos(this.clinicService.findAllSpecialties()));
-        if (specialties.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(specialties, HttpStatus.OK);
+    public ResponseEntity<List<SpecialtyDto>> listSpecialties(Integer after, Integer limit) {
+        return this.responseCache.list(CachingConfig.SPECIALTY_RESPONSES, this.clinicService.getVersion(Specialty.class), after, limit, () -> {
+            CursorPage<Specialty> page =
+                CursorPage.fetch(limit, n -> this.clinicService.findAllSpecialties(CursorPage.after(after), n));
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(new ArrayList<>(specialtyMapper.toSpecialtyDtos(page.getContent())),
+                page.headers(), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
     public ResponseEntity<SpecialtyDto> getSpecialty(Integer specialtyId) {
-        Specialty specialty = this.clinicService.findSpecialtyById(specialtyId);
-        if (specialty == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(specialtyMapper.toSpecialtyDto(specialty), HttpStatus.OK);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Specialty.class), () -> {
+            Specialty specialty = this.clinicService.findSpecialtyById(specialtyId);
+            if (specialty == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(specialtyMapper.toSpecialtyDto(specialty), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
@@ -88,9 +98,11 @@ public class SpecialtyRestController implements SpecialtiesApi {
         if (currentSpecialty == null) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        currentSpecialty.setName(specialtyDto.getName());
-        this.clinicService.saveSpecialty(currentSpecialty);
-        return new ResponseEntity<>(specialtyMapper.toSpecialtyDto(currentSpecialty), HttpStatus.NO_CONTENT);
+        // the specialty found may be the cached instance, so the change goes to a copy
+        Specialty specialty = specialtyMapper.toSpecialty(specialtyDto);
+        specialty.setId(currentSpecialty.getId());
+        this.clinicService.saveSpecialty(specialty);
+        return new ResponseEntity<>(specialtyMapper.toSpecialtyDto(specialty), HttpStatus.NO_CONTENT);
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
@@ -18,6 +18,7 @@ package org.springframework.samples.petclinic.rest.controller;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.config.CachingConfig;
 import org.springframework.samples.petclinic.mapper.SpecialtyMapper;
 import org.springframework.samples.petclinic.mapper.VetMapper;
 import org.springframework.samples.petclinic.model.Specialty;
@@ -39,39 +40,60 @@ import java.util.stream.Collectors;
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + CursorPage.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class VetRestController implements VetsApi {
 
     private final ClinicService clinicService;
     private final VetMapper vetMapper;
     private final SpecialtyMapper specialtyMapper;
+    private final JsonResponseCache responseCache;
 
-    public VetRestController(ClinicService clinicService, VetMapper vetMapper, SpecialtyMapper specialtyMapper) {
+    public VetRestController(ClinicService clinicService, VetMapper vetMapper, SpecialtyMapper specialtyMapper,
+                             JsonResponseCache responseCache) {
         this.clinicService = clinicService;
         this.vetMapper = vetMapper;
         this.specialtyMapper = specialtyMapper;
+        this.responseCache = responseCache;
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
-    public ResponseEntity<List<VetDto>> listVets() {
-        List<VetDto> vets = new ArrayList<>();
-        vets.addAll(vetMapper.toVetDtos(this.clinicService.findAllVets()));
-        if (vets.isEmpty()) {
+    public ResponseEntity<List<VetDto>> listVets(Integer after, Integer limit, List<String> fields,
+                                                 List<String> include) {
+        Fieldset fieldset = Fieldset.of(Fieldset.Representation.VET, fields, include);
+        long version = this.clinicService.getVersion(Vet.class);
+        if (fieldset.isSparse()) {
+            // only whole listings are kept serialized
+            return ConditionalGet.ifNoneMatch(version, fieldset.tag(), () -> listVets(after, limit, fieldset));
+        }
+        return this.responseCache.list(CachingConfig.VET_RESPONSES, version, after, limit,
+            () -> listVets(after, limit, fieldset));
+    }
+
+    private ResponseEntity<List<VetDto>> listVets(Integer after, Integer limit, Fieldset fieldset) {
+        CursorPage<Vet> page =
+            CursorPage.fetch(limit, n -> this.clinicService.findAllVets(CursorPage.after(after), n));
+        if (page.isEmpty()) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        return new ResponseEntity<>(vets, HttpStatus.OK);
+        fieldset.trimResponse();
+        return new ResponseEntity<>(new ArrayList<>(vetMapper.toVetDtos(page.getContent(), fieldset.associations())),
+            page.headers(), HttpStatus.OK);
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
     @Override
-    public ResponseEntity<VetDto> getVet(Integer vetId)  {
-        Vet vet = this.clinicService.findVetById(vetId);
-        if (vet == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(vetMapper.toVetDto(vet), HttpStatus.OK);
+    public ResponseEntity<VetDto> getVet(Integer vetId, List<String> fields, List<String> include)  {
+        Fieldset fieldset = Fieldset.of(Fieldset.Representation.VET, fields, include);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Vet.class), fieldset.tag(), () -> {
+            Vet vet = this.clinicService.findVetById(vetId);
+            if (vet == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            fieldset.trimResponse();
+            return new ResponseEntity<>(vetMapper.toVetDto(vet, fieldset.associations()), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.VET_ADMIN)")
@@ -16,8 +16,11 @@
 
 package org.springframework.samples.petclinic.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.samples.petclinic.mapper.VisitMapper;
 import org.springframework.samples.petclinic.model.Visit;
@@ -26,6 +29,7 @@ import org.springframework.samples.petclinic.rest.dto.VisitDto;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import jakarta.transaction.Transactional;
@@ -37,7 +41,7 @@ import java.util.List;
  */
 
 @RestController
-@CrossOrigin(exposedHeaders = "errors, content-type")
+@CrossOrigin(exposedHeaders = "errors, content-type, etag, " + CursorPage.NEXT_CURSOR_HEADER)
 @RequestMapping("api")
 public class VisitRestController implements VisitsApi {
 
@@ -45,30 +49,50 @@ public class VisitRestController implements VisitsApi {
 
     private final VisitMapper visitMapper;
 
-    public VisitRestController(ClinicService clinicService, VisitMapper visitMapper) {
+    private final ObjectMapper objectMapper;
+
+    public VisitRestController(ClinicService clinicService, VisitMapper visitMapper, ObjectMapper objectMapper) {
         this.clinicService = clinicService;
         this.visitMapper = visitMapper;
+        this.objectMapper = objectMapper;
     }
 
 
+    /**
+     * Streams all visits as NDJSON, read from a database cursor, when the client asks for
+     * <code>application/x-ndjson</code> instead of a JSON page.
+     */
+    @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
+    @GetMapping(value = "/visits", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamVisits() {
+        return NdjsonResponse.ok(this.objectMapper,
+            writer -> this.clinicService.streamAllVisits(visit -> writer.accept(this.visitMapper.toVisitDto(visit))));
+    }
+
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
-    public ResponseEntity<List<VisitDto>> listVisits() {
-        List<Visit> visits = new ArrayList<>(this.clinicService.findAllVisits());
-        if (visits.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(new ArrayList<>(visitMapper.toVisitsDto(visits)), HttpStatus.OK);
+    public ResponseEntity<List<VisitDto>> listVisits(Integer after, Integer limit) {
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Visit.class), () -> {
+            CursorPage<Visit> page =
+                CursorPage.fetch(limit, n -> this.clinicService.findAllVisits(CursorPage.after(after), n));
+            if (page.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(new ArrayList<>(visitMapper.toVisitsDto(page.getContent())), page.headers(),
+                HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
     @Override
     public ResponseEntity<VisitDto> getVisit( Integer visitId) {
-        Visit visit = this.clinicService.findVisitById(visitId);
-        if (visit == null) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-        return new ResponseEntity<>(visitMapper.toVisitDto(visit), HttpStatus.OK);
+        return ConditionalGet.ifNoneMatch(this.clinicService.getVersion(Visit.class), () -> {
+            Visit visit = this.clinicService.findVisitById(visitId);
+            if (visit == null) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(visitMapper.toVisitDto(visit), HttpStatus.OK);
+        });
     }
 
     @PreAuthorize("hasRole(@roles.OWNER_ADMIN)")
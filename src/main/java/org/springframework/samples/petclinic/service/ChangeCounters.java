@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Counts the committed writes to each kind of entity, and to each owner aggregate, so that a version of them can be
+ * read without touching the database.
+ * <p>
+ * Owner aggregates share a fixed set of counters by ID, so a write to an owner may also change the version of a few
+ * others, but never leaves its own unchanged. The version of an owner includes the pet type count, as the aggregate
+ * embeds the types of its pets. Counts are only raised once the writing transaction has committed and the caches
+ * have dropped what it changed, so a reader that sees a new version never finds the old data; a rolled back write
+ * leaves them as they were.
+ */
+final class ChangeCounters {
+
+    private static final int OWNER_STRIPES = 1024;
+
+    private final AtomicLongArray owners = new AtomicLongArray(OWNER_STRIPES);
+
+    private final Map<Class<?>, AtomicLong> types = new ConcurrentHashMap<>();
+
+    long ownerVersion(int ownerId) {
+        return this.owners.get(stripe(ownerId)) + typeVersion(PetType.class);
+    }
+
+    long typeVersion(Class<?> type) {
+        AtomicLong count = this.types.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Counts a write to the aggregates of the given owners, and to each of the given types, once it commits. A
+     * <code>null</code> ID stands for an owner that is yet to be created, which no client can hold a version of.
+     */
+    void ownersChanged(Collection<Integer> ownerIds, Class<?>... types) {
+        List<Integer> stripes = new ArrayList<>(ownerIds.size());
+        for (Integer ownerId : ownerIds) {
+            if (ownerId != null) {
+                stripes.add(stripe(ownerId));
+            }
+        }
+        afterCommit(() -> {
+            stripes.forEach(this.owners::incrementAndGet);
+            count(types);
+        });
+    }
+
+    /**
+     * Counts a write to each of the given types once it commits.
+     */
+    void changed(Class<?>... types) {
+        afterCommit(() -> count(types));
+    }
+
+    private void count(Class<?>[] types) {
+        for (Class<?> type : types) {
+            this.types.computeIfAbsent(type, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    private static int stripe(int ownerId) {
+        return ownerId & (OWNER_STRIPES - 1);
+    }
+
+    private static void afterCommit(Runnable count) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        count.run();
+                    }
+                }
+            });
+        } else {
+            count.run();
+        }
+    }
+
+}
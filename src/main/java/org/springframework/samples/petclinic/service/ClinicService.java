@@ -18,8 +18,11 @@ package org.springframework.samples.petclinic.service;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.springframework.dao.DataAccessException;
+import org.springframework.samples.petclinic.model.Association;
+import org.springframework.samples.petclinic.model.BaseEntity;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
@@ -37,36 +40,65 @@ public interface ClinicService {
 
 	Pet findPetById(int id) throws DataAccessException;
 	Collection<Pet> findAllPets() throws DataAccessException;
+	Collection<Pet> findAllPets(int afterId, int limit) throws DataAccessException;
+	Collection<Pet> findAllPets(int afterId, int limit, Set<Association> associations) throws DataAccessException;
+	Pet findPetById(int id, Set<Association> associations) throws DataAccessException;
 	void savePet(Pet pet) throws DataAccessException;
+	void savePets(Collection<Pet> pets) throws DataAccessException;
 	void deletePet(Pet pet) throws DataAccessException;
 
 	Collection<Visit> findVisitsByPetId(int petId);
 	Visit findVisitById(int visitId) throws DataAccessException;
 	Collection<Visit> findAllVisits() throws DataAccessException;
+	Collection<Visit> findAllVisits(int afterId, int limit) throws DataAccessException;
+	void streamAllVisits(Consumer<? super Visit> action) throws DataAccessException;
 	void saveVisit(Visit visit) throws DataAccessException;
+	void saveVisits(Collection<Visit> visits) throws DataAccessException;
 	void deleteVisit(Visit visit) throws DataAccessException;
 	Vet findVetById(int id) throws DataAccessException;
 	Collection<Vet> findVets() throws DataAccessException;
 	Collection<Vet> findAllVets() throws DataAccessException;
+	Collection<Vet> findAllVets(int afterId, int limit) throws DataAccessException;
 	void saveVet(Vet vet) throws DataAccessException;
 	void deleteVet(Vet vet) throws DataAccessException;
 	Owner findOwnerById(int id) throws DataAccessException;
 	Collection<Owner> findAllOwners() throws DataAccessException;
+	Collection<Owner> findAllOwners(int afterId, int limit) throws DataAccessException;
+	Collection<Owner> findAllOwners(int afterId, int limit, Set<Association> associations) throws DataAccessException;
+	Owner findOwnerById(int id, Set<Association> associations) throws DataAccessException;
+	void streamAllOwners(Consumer<? super Owner> action) throws DataAccessException;
 	void saveOwner(Owner owner) throws DataAccessException;
 	void deleteOwner(Owner owner) throws DataAccessException;
 	Collection<Owner> findOwnerByLastName(String lastName) throws DataAccessException;
+	Collection<Owner> findOwnerByLastName(String lastName, int afterId, int limit) throws DataAccessException;
+	Collection<Owner> findOwnerByLastName(String lastName, int afterId, int limit, Set<Association> associations)
+		throws DataAccessException;
 
 	PetType findPetTypeById(int petTypeId);
 	Collection<PetType> findAllPetTypes() throws DataAccessException;
+	Collection<PetType> findAllPetTypes(int afterId, int limit) throws DataAccessException;
 	Collection<PetType> findPetTypes() throws DataAccessException;
 	void savePetType(PetType petType) throws DataAccessException;
 	void deletePetType(PetType petType) throws DataAccessException;
 	Specialty findSpecialtyById(int specialtyId);
 	Collection<Specialty> findAllSpecialties() throws DataAccessException;
+	Collection<Specialty> findAllSpecialties(int afterId, int limit) throws DataAccessException;
 	void saveSpecialty(Specialty specialty) throws DataAccessException;
 	void deleteSpecialty(Specialty specialty) throws DataAccessException;
 
     List<Specialty> findSpecialtiesByNameIn(Set<String> names) throws DataAccessException;
 
     PetType findPetTypeByName(String name) throws DataAccessException;
+
+    /**
+     * Version of the owner aggregate with the given ID, which changes whenever a committed write may have changed the
+     * owner, its pets or their visits.
+     */
+    long getOwnerVersion(int ownerId);
+
+    /**
+     * Version of all entities of the given type, which changes whenever a committed write may have changed one of
+     * them, or what their representations embed.
+     */
+    long getVersion(Class<? extends BaseEntity> type);
 }
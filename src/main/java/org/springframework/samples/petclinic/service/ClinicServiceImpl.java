@@ -17,13 +17,25 @@ package org.springframework.samples.petclinic.service;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.orm.ObjectRetrievalFailureException;
+import org.springframework.samples.petclinic.config.CachingConfig;
+import org.springframework.samples.petclinic.model.Association;
+import org.springframework.samples.petclinic.model.BaseEntity;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.model.PetType;
@@ -37,11 +49,27 @@ import org.springframework.samples.petclinic.repository.SpecialtyRepository;
 import org.springframework.samples.petclinic.repository.VetRepository;
 import org.springframework.samples.petclinic.repository.VisitRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Mostly used as a facade for all Petclinic controllers
- * Also a placeholder for @Transactional and @Cacheable annotations
+ * Also a placeholder for @Transactional and @Cacheable annotations.
+ * Pet types and specialties are cached by ID and by name; every write to them empties their caches, once before it
+ * runs and once more after it commits. This drops what reads racing the write cached meanwhile, but a read that
+ * loaded the old value before the commit may still put it after the second eviction; it then stays until it expires.
+ * Owners are cached by ID with their pets and visits. A write to an owner, one of its pets or one of their visits
+ * evicts that owner's aggregate the same way; a write to a pet type evicts all of them. Cached instances are shared,
+ * so callers copy them before changing them. Searches of owners by last name prefix are cached as well; a write to an
+ * owner evicts the searches that returned it or that match its new last name, see {@link OwnerSearches}.
+ * Reads of owners leaving some {@link Association associations} out are served from these caches when they hold the
+ * whole aggregates, but never fill them; their caches are checked before the read-only transaction is opened, as
+ * with <code>@Cacheable</code>.
+ * All listings of vets are served from the {@link VetRoster}, which every write to vets or specialties invalidates.
+ * The same writes, and those to pet types, empty the caches of serialized listings kept by the REST controllers.
+ * Every write is counted once it commits, which versions the owner aggregates and each kind of entity, see
+ * {@link ChangeCounters}.
  *
  * @author Michael Isvy
  * @author Vitaliy Fedoriv
@@ -55,6 +83,11 @@ public class ClinicServiceImpl implements ClinicService {
     private VisitRepository visitRepository;
     private SpecialtyRepository specialtyRepository;
 	private PetTypeRepository petTypeRepository;
+	private Cache owners;
+	private Cache ownerSearches;
+	private VetRoster vetRoster;
+	private ChangeCounters changeCounters = new ChangeCounters();
+	private TransactionTemplate readOnly;
 
     @Autowired
      public ClinicServiceImpl(
@@ -63,25 +96,56 @@ public class ClinicServiceImpl implements ClinicService {
     		 OwnerRepository ownerRepository,
     		 VisitRepository visitRepository,
     		 SpecialtyRepository specialtyRepository,
-			 PetTypeRepository petTypeRepository) {
+			 PetTypeRepository petTypeRepository,
+			 CacheManager cacheManager,
+			 VetRoster vetRoster,
+			 PlatformTransactionManager transactionManager) {
         this.petRepository = petRepository;
         this.vetRepository = vetRepository;
         this.ownerRepository = ownerRepository;
         this.visitRepository = visitRepository;
         this.specialtyRepository = specialtyRepository;
 		this.petTypeRepository = petTypeRepository;
+		this.owners = cacheManager.getCache(CachingConfig.OWNERS);
+		this.ownerSearches = cacheManager.getCache(CachingConfig.OWNER_SEARCHES);
+		this.vetRoster = vetRoster;
+		this.readOnly = new TransactionTemplate(transactionManager);
+		this.readOnly.setReadOnly(true);
     }
 
+	@Override
+	public long getOwnerVersion(int ownerId) {
+		return changeCounters.ownerVersion(ownerId);
+	}
+
+	@Override
+	public long getVersion(Class<? extends BaseEntity> type) {
+		return changeCounters.typeVersion(type);
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public Collection<Pet> findAllPets() throws DataAccessException {
 		return petRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Pet> findAllPets(int afterId, int limit) throws DataAccessException {
+		return findAllPets(afterId, limit, Association.ALL);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Pet> findAllPets(int afterId, int limit, Set<Association> associations)
+		throws DataAccessException {
+		return petRepository.findAll(afterId, limit, associations);
+	}
+
 	@Override
 	@Transactional
 	public void deletePet(Pet pet) throws DataAccessException {
-		petRepository.delete(pet);
+		writeOwner(ownerIdOf(pet), () -> petRepository.delete(pet));
 	}
 
 	@Override
@@ -103,10 +167,22 @@ public class ClinicServiceImpl implements ClinicService {
 		return visitRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Visit> findAllVisits(int afterId, int limit) throws DataAccessException {
+		return visitRepository.findAll(afterId, limit);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void streamAllVisits(Consumer<? super Visit> action) throws DataAccessException {
+		visitRepository.streamAll(action);
+	}
+
 	@Override
 	@Transactional
 	public void deleteVisit(Visit visit) throws DataAccessException {
-		visitRepository.delete(visit);
+		writeOwner(ownerIdOf(visit), () -> visitRepository.delete(visit));
 	}
 
 	@Override
@@ -123,21 +199,37 @@ public class ClinicServiceImpl implements ClinicService {
 	}
 
 	@Override
-	@Transactional(readOnly = true)
 	public Collection<Vet> findAllVets() throws DataAccessException {
-		return vetRepository.findAll();
+		List<Vet> vets = vetRoster.all();
+		return vets != null ? vets : vetRepository.findAll();
+	}
+
+	@Override
+	public Collection<Vet> findAllVets(int afterId, int limit) throws DataAccessException {
+		List<Vet> vets = vetRoster.page(afterId, limit);
+		return vets != null ? vets : vetRepository.findAll(afterId, limit);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(cacheNames = CachingConfig.VET_RESPONSES, allEntries = true, beforeInvocation = true),
+		@CacheEvict(cacheNames = CachingConfig.VET_RESPONSES, allEntries = true)})
 	public void saveVet(Vet vet) throws DataAccessException {
+		vetRoster.invalidate();
 		vetRepository.save(vet);
+		changeCounters.changed(Vet.class);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(cacheNames = CachingConfig.VET_RESPONSES, allEntries = true, beforeInvocation = true),
+		@CacheEvict(cacheNames = CachingConfig.VET_RESPONSES, allEntries = true)})
 	public void deleteVet(Vet vet) throws DataAccessException {
+		vetRoster.invalidate();
 		vetRepository.delete(vet);
+		changeCounters.changed(Vet.class);
 	}
 
 	@Override
@@ -146,14 +238,34 @@ public class ClinicServiceImpl implements ClinicService {
 		return ownerRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Owner> findAllOwners(int afterId, int limit) throws DataAccessException {
+		return findAllOwners(afterId, limit, Association.ALL);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Owner> findAllOwners(int afterId, int limit, Set<Association> associations)
+		throws DataAccessException {
+		return ownerRepository.findAll(afterId, limit, associations);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public void streamAllOwners(Consumer<? super Owner> action) throws DataAccessException {
+		ownerRepository.streamAll(action);
+	}
+
 	@Override
 	@Transactional
 	public void deleteOwner(Owner owner) throws DataAccessException {
-		ownerRepository.delete(owner);
+		writeOwner(owner.getId(), () -> ownerRepository.delete(owner));
 	}
 
 	@Override
     @Transactional(readOnly = true)
+	@Cacheable(cacheNames = CachingConfig.PET_TYPES, unless = "#result == null")
 	public PetType findPetTypeById(int petTypeId) {
 		PetType petType = null;
 		try {
@@ -171,20 +283,44 @@ public class ClinicServiceImpl implements ClinicService {
 		return petTypeRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<PetType> findAllPetTypes(int afterId, int limit) throws DataAccessException {
+		return petTypeRepository.findAll(afterId, limit);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(cacheNames = {CachingConfig.PET_TYPES, CachingConfig.PET_TYPES_BY_NAME, CachingConfig.OWNERS,
+			CachingConfig.OWNER_SEARCHES, CachingConfig.PET_TYPE_RESPONSES},
+			allEntries = true, beforeInvocation = true),
+		@CacheEvict(cacheNames = {CachingConfig.PET_TYPES, CachingConfig.PET_TYPES_BY_NAME, CachingConfig.OWNERS,
+			CachingConfig.OWNER_SEARCHES, CachingConfig.PET_TYPE_RESPONSES},
+			allEntries = true)})
 	public void savePetType(PetType petType) throws DataAccessException {
 		petTypeRepository.save(petType);
+		changeCounters.changed(PetType.class, Owner.class, Pet.class);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(cacheNames = {CachingConfig.PET_TYPES, CachingConfig.PET_TYPES_BY_NAME, CachingConfig.OWNERS,
+			CachingConfig.OWNER_SEARCHES, CachingConfig.PET_TYPE_RESPONSES},
+			allEntries = true, beforeInvocation = true),
+		@CacheEvict(cacheNames = {CachingConfig.PET_TYPES, CachingConfig.PET_TYPES_BY_NAME, CachingConfig.OWNERS,
+			CachingConfig.OWNER_SEARCHES, CachingConfig.PET_TYPE_RESPONSES},
+			allEntries = true)})
 	public void deletePetType(PetType petType) throws DataAccessException {
 		petTypeRepository.delete(petType);
+		// the pets of the type go with it, and their visits too
+		changeCounters.changed(PetType.class, Owner.class, Pet.class, Visit.class);
 	}
 
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = CachingConfig.SPECIALTIES, unless = "#result == null")
 	public Specialty findSpecialtyById(int specialtyId) {
 		Specialty specialty = null;
 		try {
@@ -202,16 +338,36 @@ public class ClinicServiceImpl implements ClinicService {
 		return specialtyRepository.findAll();
 	}
 
+	@Override
+	@Transactional(readOnly = true)
+	public Collection<Specialty> findAllSpecialties(int afterId, int limit) throws DataAccessException {
+		return specialtyRepository.findAll(afterId, limit);
+	}
+
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(cacheNames = {CachingConfig.SPECIALTIES, CachingConfig.SPECIALTIES_BY_NAMES,
+			CachingConfig.SPECIALTY_RESPONSES, CachingConfig.VET_RESPONSES}, allEntries = true, beforeInvocation = true),
+		@CacheEvict(cacheNames = {CachingConfig.SPECIALTIES, CachingConfig.SPECIALTIES_BY_NAMES,
+			CachingConfig.SPECIALTY_RESPONSES, CachingConfig.VET_RESPONSES}, allEntries = true)})
 	public void saveSpecialty(Specialty specialty) throws DataAccessException {
+		vetRoster.invalidate();
 		specialtyRepository.save(specialty);
+		changeCounters.changed(Specialty.class, Vet.class);
 	}
 
 	@Override
 	@Transactional
+	@Caching(evict = {
+		@CacheEvict(cacheNames = {CachingConfig.SPECIALTIES, CachingConfig.SPECIALTIES_BY_NAMES,
+			CachingConfig.SPECIALTY_RESPONSES, CachingConfig.VET_RESPONSES}, allEntries = true, beforeInvocation = true),
+		@CacheEvict(cacheNames = {CachingConfig.SPECIALTIES, CachingConfig.SPECIALTIES_BY_NAMES,
+			CachingConfig.SPECIALTY_RESPONSES, CachingConfig.VET_RESPONSES}, allEntries = true)})
 	public void deleteSpecialty(Specialty specialty) throws DataAccessException {
+		vetRoster.invalidate();
 		specialtyRepository.delete(specialty);
+		changeCounters.changed(Specialty.class, Vet.class);
 	}
 
 	@Override
@@ -221,24 +377,54 @@ public class ClinicServiceImpl implements ClinicService {
 	}
 
 	@Override
-	@Transactional(readOnly = true)
 	public Owner findOwnerById(int id) throws DataAccessException {
-		Owner owner = null;
+		return findOwnerById(id, Association.ALL);
+	}
+
+	/**
+	 * Serves any read of an owner from its cached aggregate. Only reads of the whole aggregate fill the cache, as
+	 * those leaving associations out would answer later reads with less than they ask for.
+	 */
+	@Override
+	public Owner findOwnerById(int id, Set<Association> associations) throws DataAccessException {
+		Owner owner = owners.get(id, Owner.class);
+		if (owner != null) {
+			return owner;
+		}
+		boolean whole = isWhole(associations);
+		owner = readOnly.execute(status -> {
+			try {
+				return whole ? ownerRepository.findById(id) : ownerRepository.findById(id, associations);
+			} catch (ObjectRetrievalFailureException|EmptyResultDataAccessException e) {
+			// just ignore not found exceptions for Jdbc/Jpa realization
+				return null;
+			}
+		});
+		if (whole && owner != null) {
+			owners.put(id, owner);
+		}
+		return owner;
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Pet findPetById(int id) throws DataAccessException {
+		Pet pet = null;
 		try {
-			owner = ownerRepository.findById(id);
+			pet = petRepository.findById(id);
 		} catch (ObjectRetrievalFailureException|EmptyResultDataAccessException e) {
 		// just ignore not found exceptions for Jdbc/Jpa realization
 			return null;
 		}
-		return owner;
+		return pet;
 	}
 
 	@Override
 	@Transactional(readOnly = true)
-	public Pet findPetById(int id) throws DataAccessException {
+	public Pet findPetById(int id, Set<Association> associations) throws DataAccessException {
 		Pet pet = null;
 		try {
-			pet = petRepository.findById(id);
+			pet = petRepository.findById(id, associations);
 		} catch (ObjectRetrievalFailureException|EmptyResultDataAccessException e) {
 		// just ignore not found exceptions for Jdbc/Jpa realization
 			return null;
@@ -249,35 +435,82 @@ public class ClinicServiceImpl implements ClinicService {
 	@Override
 	@Transactional
 	public void savePet(Pet pet) throws DataAccessException {
-		petRepository.save(pet);
+		writeOwner(ownerIdOf(pet), () -> petRepository.save(pet));
+	}
+
+	@Override
+	@Transactional
+	public void savePets(Collection<Pet> pets) throws DataAccessException {
+		writeOwners(ownerIdsOf(pets), () -> petRepository.saveAll(pets));
 	}
 
 	@Override
 	@Transactional
 	public void saveVisit(Visit visit) throws DataAccessException {
-		visitRepository.save(visit);
+		writeOwner(ownerIdOf(visit), () -> visitRepository.save(visit));
+	}
 
+	@Override
+	@Transactional
+	public void saveVisits(Collection<Visit> visits) throws DataAccessException {
+		List<Pet> pets = new ArrayList<>(visits.size());
+		for (Visit visit : visits) {
+			if (visit.getPet() != null) {
+				pets.add(visit.getPet());
+			}
+		}
+		writeOwners(ownerIdsOf(pets), () -> visitRepository.saveAll(visits));
 	}
 
 	@Override
-	@Transactional(readOnly = true)
 	public Collection<Vet> findVets() throws DataAccessException {
-		return vetRepository.findAll();
+		return findAllVets();
 	}
 
 	@Override
 	@Transactional
 	public void saveOwner(Owner owner) throws DataAccessException {
-		ownerRepository.save(owner);
-
+		writeOwners(Collections.singleton(owner.getId()), owner.getLastName(), () -> ownerRepository.save(owner));
 	}
 
 	@Override
 	@Transactional(readOnly = true)
+	@Cacheable(cacheNames = CachingConfig.OWNER_SEARCHES, key = "#p0")
 	public Collection<Owner> findOwnerByLastName(String lastName) throws DataAccessException {
 		return ownerRepository.findByLastName(lastName);
 	}
 
+	@Override
+	public Collection<Owner> findOwnerByLastName(String lastName, int afterId, int limit) throws DataAccessException {
+		return findOwnerByLastName(lastName, afterId, limit, Association.ALL);
+	}
+
+	/**
+	 * Serves any search for a page of owners from the cached page of whole aggregates, which only searches for
+	 * those fill.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public Collection<Owner> findOwnerByLastName(String lastName, int afterId, int limit,
+		Set<Association> associations) throws DataAccessException {
+		List<Object> key = List.of(lastName, afterId, limit);
+		Collection<Owner> found = ownerSearches.get(key, Collection.class);
+		if (found != null) {
+			return found;
+		}
+		boolean whole = isWhole(associations);
+		found = readOnly.execute(status -> ownerRepository.findByLastName(lastName, afterId, limit,
+			whole ? Association.ALL : associations));
+		if (whole) {
+			ownerSearches.put(key, found);
+		}
+		return found;
+	}
+
+	private static boolean isWhole(Set<Association> associations) {
+		return associations.containsAll(EnumSet.of(Association.PETS, Association.VISITS));
+	}
+
 	@Override
 	@Transactional(readOnly = true)
 	public Collection<Visit> findVisitsByPetId(int petId) {
@@ -286,6 +519,7 @@ public class ClinicServiceImpl implements ClinicService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CachingConfig.SPECIALTIES_BY_NAMES)
     public List<Specialty> findSpecialtiesByNameIn(Set<String> names){
         List<Specialty> specialties = new ArrayList<>();
         try {
@@ -299,6 +533,7 @@ public class ClinicServiceImpl implements ClinicService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CachingConfig.PET_TYPES_BY_NAME, unless = "#result == null")
     public PetType findPetTypeByName(String name){
         PetType petType;
         try {
@@ -309,4 +544,74 @@ public class ClinicServiceImpl implements ClinicService {
         }
         return petType;
     }
+
+    /**
+     * Runs a write to the aggregate of the given owner. The cached aggregate is evicted at once, so the running
+     * transaction reads its own change, and once more after the commit, as a read racing the write may have cached
+     * the old state meanwhile.
+     */
+    private void writeOwner(Integer ownerId, Runnable write) {
+        writeOwners(Collections.singleton(ownerId), null, write);
+    }
+
+    private void writeOwners(Collection<Integer> ownerIds, Runnable write) {
+        writeOwners(ownerIds, null, write);
+    }
+
+    /**
+     * Runs a write to the aggregates of the given owners, one of which may take <code>lastName</code>.
+     */
+    private void writeOwners(Collection<Integer> ownerIds, String lastName, Runnable write) {
+        OwnerSearches.evict(this.ownerSearches, ownerIds, lastName);
+        for (Integer ownerId : ownerIds) {
+            if (ownerId != null) {
+                this.owners.evictIfPresent(ownerId);
+            }
+        }
+        write.run();
+        this.changeCounters.ownersChanged(ownerIds, Owner.class, Pet.class, Visit.class);
+        for (Integer ownerId : ownerIds) {
+            if (ownerId != null) {
+                this.owners.evict(ownerId);
+            }
+        }
+    }
+
+    private Integer ownerIdOf(Visit visit) {
+        return visit.getPet() == null ? null : ownerIdOf(visit.getPet());
+    }
+
+    /**
+     * Pets and visits built from a request often carry the pet ID only; the owner is then read from the database.
+     */
+    private Integer ownerIdOf(Pet pet) {
+        if (pet.getOwner() != null && pet.getOwner().getId() != null) {
+            return pet.getOwner().getId();
+        }
+        if (pet.getId() == null) {
+            return null;
+        }
+        Pet stored = findPetById(pet.getId());
+        return stored == null || stored.getOwner() == null ? null : stored.getOwner().getId();
+    }
+
+    /**
+     * Same as {@link #ownerIdOf(Pet)} for several pets, reading the owners of those that carry their ID only with a
+     * single query.
+     */
+    private Set<Integer> ownerIdsOf(Collection<Pet> pets) {
+        Set<Integer> ownerIds = new HashSet<>();
+        Set<Integer> petIds = new HashSet<>();
+        for (Pet pet : pets) {
+            if (pet.getOwner() != null && pet.getOwner().getId() != null) {
+                ownerIds.add(pet.getOwner().getId());
+            } else if (pet.getId() != null) {
+                petIds.add(pet.getId());
+            }
+        }
+        if (!petIds.isEmpty()) {
+            ownerIds.addAll(petRepository.findOwnerIdsByPetIds(petIds));
+        }
+        return ownerIds;
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.springframework.cache.Cache;
+import org.springframework.samples.petclinic.config.CachingConfig;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Evicts the results of owner searches by last name prefix, as cached in {@link CachingConfig#OWNER_SEARCHES} under
+ * the searched prefix, or a list of the prefix and the page bounds.
+ * <p>
+ * A write to an owner evicts the searches that returned the owner, which covers its old last name, and the searches
+ * whose prefix matches its new last name. The prefixes are compared case- and accent-insensitively, so that no
+ * database collation can match a name the comparison misses; a prefix holding a <code>LIKE</code> wildcard matches
+ * every name.
+ * <p>
+ * The searches to evict are found by scanning the whole cache, once before the write and once after it commits, which
+ * costs one check per owner held and one prefix comparison per search. Rather than keeping indexes by owner and by
+ * prefix in step with the cache's own evictions, the cache is bounded by weight to a few thousand owners, see
+ * {@link CachingConfig#OWNER_SEARCHES}, at which size the scan stays small next to the write itself.
+ */
+final class OwnerSearches {
+
+    private OwnerSearches() {
+    }
+
+    /**
+     * Evicts the searches affected by a write to the given owners, of which one may be renamed to (or created with)
+     * <code>lastName</code>. They are evicted at once, so that the running transaction reads its own write, and once
+     * more after it commits, as a search racing the write may have cached the old results meanwhile.
+     */
+    static void evict(Cache searches, Collection<Integer> ownerIds, String lastName) {
+        String name = lastName == null ? null : normalize(lastName);
+        Predicate<Map.Entry<Object, Object>> affected = entry -> returnsAny(entry.getValue(), ownerIds)
+            || (name != null && matchesNormalized(prefixOf(entry.getKey()), name));
+        Map<Object, Object> entries = entriesOf(searches);
+        entries.entrySet().removeIf(affected);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    entries.entrySet().removeIf(affected);
+                }
+            });
+        }
+    }
+
+    /**
+     * Tells whether a <code>LIKE 'prefix%'</code> search may match <code>lastName</code>.
+     */
+    static boolean matches(String prefix, String lastName) {
+        return matchesNormalized(prefix, normalize(lastName));
+    }
+
+    private static boolean matchesNormalized(String prefix, String normalizedLastName) {
+        if (prefix.indexOf('%') >= 0 || prefix.indexOf('_') >= 0 || prefix.indexOf('\\') >= 0) {
+            return true;
+        }
+        return normalizedLastName.startsWith(normalize(prefix));
+    }
+
+    private static String normalize(String name) {
+        return Normalizer.normalize(name, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static String prefixOf(Object key) {
+        return key instanceof List<?> search ? (String) search.get(0) : (String) key;
+    }
+
+    private static boolean returnsAny(Object owners, Collection<Integer> ownerIds) {
+        for (Object owner : (Collection<?>) owners) {
+            if (ownerIds.contains(((Owner) owner).getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> entriesOf(Cache searches) {
+        return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) searches.getNativeCache()).asMap();
+    }
+
+}
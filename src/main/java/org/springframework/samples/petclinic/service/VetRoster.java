@@ -0,0 +1,223 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.samples.petclinic.config.CachingConfig;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.repository.VetRepository;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Snapshot of all vets with their specialties, kept in the {@link CachingConfig#VETS} cache and shared by every
+ * listing of vets.
+ * <p>
+ * Concurrent reads that find no snapshot wait for a single load. Once a snapshot is older than the refresh interval,
+ * the next read triggers one background reload and is served the old snapshot meanwhile; the reload only replaces the
+ * snapshot it was started for, so it never brings back one that a write has invalidated. Snapshots are loaded in a
+ * read-only transaction of their own, so they hold committed data only, and a transaction that has written vets or
+ * specialties reads them from the repository until it completes. Reloads run on a single daemon thread of the roster's
+ * own, which is stopped with the bean.
+ */
+@Component
+class VetRoster implements DisposableBean {
+
+    private static final Log logger = LogFactory.getLog(VetRoster.class);
+
+    private static final String KEY = "all";
+
+    private final Cache cache;
+
+    private final Supplier<Collection<Vet>> loader;
+
+    private final long refreshAfterNanos;
+
+    private final Executor refreshExecutor;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    @Autowired
+    VetRoster(VetRepository vetRepository, PlatformTransactionManager transactionManager, CacheManager cacheManager,
+              @Value("${petclinic.cache.vets.refresh-after:1m}") Duration refreshAfter) {
+        this(cacheManager.getCache(CachingConfig.VETS), snapshotLoader(vetRepository, transactionManager),
+            refreshAfter, Executors.newSingleThreadExecutor(refreshThreads()));
+    }
+
+    VetRoster(Cache cache, Supplier<Collection<Vet>> loader, Duration refreshAfter, Executor refreshExecutor) {
+        this.cache = cache;
+        this.loader = loader;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    private static CustomizableThreadFactory refreshThreads() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("vet-roster-refresh-");
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    private static Supplier<Collection<Vet>> snapshotLoader(VetRepository vetRepository,
+                                                            PlatformTransactionManager transactionManager) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.setReadOnly(true);
+        return () -> transaction.execute(status -> vetRepository.findAll());
+    }
+
+    /**
+     * Returns all vets in the order of {@link VetRepository#findAll()}, or <code>null</code> if the current
+     * transaction has written vets and has to read them from the repository.
+     */
+    List<Vet> all() {
+        Snapshot snapshot = snapshot();
+        return snapshot == null ? null : snapshot.vets;
+    }
+
+    /**
+     * Returns up to <code>limit</code> vets with an ID above <code>afterId</code>, in ID order, or <code>null</code>
+     * if the current transaction has written vets.
+     */
+    List<Vet> page(int afterId, int limit) {
+        Snapshot snapshot = snapshot();
+        if (snapshot == null) {
+            return null;
+        }
+        List<Vet> byId = snapshot.byId;
+        int low = 0;
+        int high = byId.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (byId.get(middle).getId() <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return byId.subList(low, Math.min(byId.size(), low + Math.max(limit, 0)));
+    }
+
+    /**
+     * Drops the snapshot at once and, as a read racing the write may load the old state meanwhile, once more after
+     * the current transaction commits. Until then the transaction bypasses the snapshot.
+     */
+    void invalidate() {
+        this.cache.evictIfPresent(KEY);
+        if (TransactionSynchronizationManager.isSynchronizationActive()
+            && !TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(VetRoster.this);
+                }
+            });
+        }
+        this.cache.evict(KEY);
+    }
+
+    /**
+     * Stops the refresh thread, abandoning a reload in progress; the snapshot it would have replaced simply stays.
+     */
+    @Override
+    public void destroy() {
+        if (this.refreshExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Snapshot snapshot() {
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return null;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = this.cache.get(KEY, this::load);
+        } catch (Cache.ValueRetrievalException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        if (System.nanoTime() - snapshot.loadedAt >= this.refreshAfterNanos && this.refreshing.compareAndSet(false, true)) {
+            try {
+                this.refreshExecutor.execute(() -> refresh(snapshot));
+            } catch (RuntimeException ex) {
+                this.refreshing.set(false);
+                throw ex;
+            }
+        }
+        return snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void refresh(Snapshot stale) {
+        try {
+            Snapshot fresh = load();
+            ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) this.cache.getNativeCache()).asMap()
+                .replace(KEY, stale, fresh);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not refresh the vet roster, serving the previous snapshot", ex);
+        } finally {
+            this.refreshing.set(false);
+        }
+    }
+
+    private Snapshot load() {
+        return new Snapshot(this.loader.get());
+    }
+
+    private static final class Snapshot {
+
+        private final long loadedAt = System.nanoTime();
+
+        private final List<Vet> vets;
+
+        private final List<Vet> byId;
+
+        Snapshot(Collection<Vet> vets) {
+            List<Vet> byId = new ArrayList<>(vets);
+            byId.sort(Comparator.comparing(Vet::getId));
+            this.vets = Collections.unmodifiableList(new ArrayList<>(vets));
+            this.byId = Collections.unmodifiableList(byId);
+        }
+
+    }
+
+}
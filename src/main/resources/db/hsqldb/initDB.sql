@@ -7,6 +7,13 @@ DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
 DROP TABLE roles IF EXISTS;
 DROP TABLE users IF EXISTS;
+DROP SEQUENCE vets_seq IF EXISTS;
+DROP SEQUENCE specialties_seq IF EXISTS;
+DROP SEQUENCE types_seq IF EXISTS;
+DROP SEQUENCE owners_seq IF EXISTS;
+DROP SEQUENCE pets_seq IF EXISTS;
+DROP SEQUENCE visits_seq IF EXISTS;
+DROP SEQUENCE roles_seq IF EXISTS;
 
 
 CREATE TABLE vets (
@@ -80,3 +87,11 @@ CREATE TABLE roles (
 ALTER TABLE roles ADD CONSTRAINT fk_username FOREIGN KEY (username) REFERENCES users (username);
 CREATE INDEX fk_username_idx ON roles (username);
 
+-- JPA identifiers, handed out 50 at a time (pooled-lo optimizer) above the sample data
+CREATE SEQUENCE vets_seq AS INTEGER START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE specialties_seq AS INTEGER START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE types_seq AS INTEGER START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE owners_seq AS INTEGER START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE pets_seq AS INTEGER START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE visits_seq AS INTEGER START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE roles_seq AS INTEGER START WITH 100 INCREMENT BY 50;
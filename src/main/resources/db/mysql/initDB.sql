@@ -80,3 +80,20 @@ CREATE TABLE IF NOT EXISTS roles (
   KEY fk_username_idx (username),
   CONSTRAINT fk_username FOREIGN KEY (username) REFERENCES users (username)
 ) engine=InnoDB;
+
+-- JPA identifiers, handed out 50 at a time (pooled-lo optimizer) above the sample data;
+-- MySQL has no sequences, so Hibernate keeps the next value of each one in a single-row table
+CREATE TABLE IF NOT EXISTS vets_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO vets_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM vets_seq);
+CREATE TABLE IF NOT EXISTS specialties_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO specialties_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM specialties_seq);
+CREATE TABLE IF NOT EXISTS types_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO types_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM types_seq);
+CREATE TABLE IF NOT EXISTS owners_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO owners_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM owners_seq);
+CREATE TABLE IF NOT EXISTS pets_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO pets_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM pets_seq);
+CREATE TABLE IF NOT EXISTS visits_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO visits_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM visits_seq);
+CREATE TABLE IF NOT EXISTS roles_seq (next_val BIGINT NOT NULL) engine=InnoDB;
+INSERT INTO roles_seq SELECT 100 FROM DUAL WHERE NOT EXISTS (SELECT * FROM roles_seq);
@@ -100,3 +100,12 @@ CREATE TABLE IF NOT EXISTS roles (
 
 ALTER TABLE roles ADD CONSTRAINT uni_username_role UNIQUE (role,username);
 ALTER SEQUENCE roles_id_seq RESTART WITH 100;
+
+-- JPA identifiers, handed out 50 at a time (pooled-lo optimizer) above the sample data
+CREATE SEQUENCE IF NOT EXISTS vets_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS specialties_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS types_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS owners_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS pets_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS visits_seq START WITH 100 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS roles_seq START WITH 100 INCREMENT BY 50;
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for {@link IntObjectMap}.
+ */
+class IntObjectMapTests {
+
+    @Test
+    void shouldStoreAndReplaceValuesAcrossResizes() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int i = -500; i <= 500; i++) {
+            map.put(i, "v" + i);
+        }
+        map.put(42, "answer");
+
+        assertThat(map.size()).isEqualTo(1001);
+        assertThat(map.get(0)).isEqualTo("v0");
+        assertThat(map.get(-500)).isEqualTo("v-500");
+        assertThat(map.get(42)).isEqualTo("answer");
+        assertThat(map.get(501)).isNull();
+    }
+
+    @Test
+    void shouldForgetAllEntriesOnClear() {
+        IntObjectMap<String> map = new IntObjectMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, "v" + i);
+        }
+        map.clear();
+
+        assertThat(map.size()).isZero();
+        assertThat(map.get(7)).isNull();
+        map.put(7, "again");
+        assertThat(map.get(7)).isEqualTo("again");
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.repository.OwnerRepository;
+import org.springframework.samples.petclinic.repository.PetRepository;
+import org.springframework.samples.petclinic.repository.PetTypeRepository;
+import org.springframework.samples.petclinic.repository.VetRepository;
+import org.springframework.samples.petclinic.repository.VisitRepository;
+import org.springframework.samples.petclinic.util.EntityUtils;
+import org.springframework.samples.petclinic.util.StatementRecorder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Guards the number of SQL statements issued by the JDBC repositories, so that per-row sub-queries do not creep
+ * back into the listing paths.
+ */
+@SpringBootTest
+@ActiveProfiles({"jdbc", "hsqldb"})
+@Import(StatementRecorder.class)
+class JdbcStatementCountTests {
+
+    @Autowired
+    private OwnerRepository ownerRepository;
+
+    @Autowired
+    private PetRepository petRepository;
+
+    @Autowired
+    private PetTypeRepository petTypeRepository;
+
+    @Autowired
+    private VetRepository vetRepository;
+
+    @Autowired
+    private VisitRepository visitRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @BeforeEach
+    void resetRecorder() {
+        this.statementRecorder.reset();
+    }
+
+    @Test
+    void shouldLoadAllOwnersWithConstantNumberOfStatements() {
+        Collection<Owner> owners = this.ownerRepository.findAll();
+        assertThat(owners).hasSize(10);
+        // owners joined with pets, pet types and visits
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        Owner owner6 = EntityUtils.getById(owners, Owner.class, 6);
+        assertThat(owner6.getPets()).hasSize(2);
+        Pet samantha = owner6.getPet("Samantha");
+        assertThat(samantha.getType().getName()).isEqualTo("cat");
+        assertThat(samantha.getVisits()).hasSize(2);
+        assertThat(samantha.getType()).isSameAs(owner6.getPet("Max").getType());
+        assertThat(EntityUtils.getById(owners, Owner.class, 10).getPets()).hasSize(2);
+        assertThat(EntityUtils.getById(owners, Owner.class, 1).getPet("Leo").getVisits()).isEmpty();
+    }
+
+    @Test
+    void shouldFindOwnersByLastNameWithConstantNumberOfStatements() {
+        Collection<Owner> owners = this.ownerRepository.findByLastName("Davis");
+        assertThat(owners).hasSize(2);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+        for (Owner owner : owners) {
+            assertThat(owner.getPets()).hasSize(1);
+        }
+    }
+
+    @Test
+    void shouldFindOwnerByIdWithSingleStatement() {
+        Owner owner = this.ownerRepository.findById(6);
+        assertThat(owner.getPets()).hasSize(2);
+        assertThat(owner.getPet("Samantha").getVisits()).hasSize(2);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    void shouldLoadLargeOwnerListingWithSingleStatement() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            rows.add(new Object[]{"First" + i, "Last" + i, "Address", "City", "6085550000"});
+        }
+        this.jdbcTemplate.batchUpdate(
+            "INSERT INTO owners (first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?)", rows);
+        this.statementRecorder.reset();
+
+        Collection<Owner> owners = this.ownerRepository.findAll();
+        assertThat(owners).hasSize(610);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStreamAllOwnersWithSingleStatement() {
+        List<Owner> owners = new ArrayList<>();
+        this.ownerRepository.streamAll(owners::add);
+        assertThat(owners).hasSize(10);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+        assertThat(EntityUtils.getById(owners, Owner.class, 6).getPet("Samantha").getVisits()).hasSize(2);
+        // pet types are only shared within one owner, as the streaming extractor forgets each finished aggregate
+        assertThat(EntityUtils.getById(owners, Owner.class, 1).getPet("Leo").getType())
+            .isNotSameAs(EntityUtils.getById(owners, Owner.class, 6).getPet("Samantha").getType());
+    }
+
+    @Test
+    void shouldLoadAllVetsWithSingleStatement() {
+        Collection<Vet> vets = this.vetRepository.findAll();
+        assertThat(vets).hasSize(6);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        Vet vet = EntityUtils.getById(vets, Vet.class, 3);
+        assertThat(vet.getSpecialties()).extracting("name").containsExactly("dentistry", "surgery");
+        assertThat(EntityUtils.getById(vets, Vet.class, 1).getNrOfSpecialties()).isZero();
+        assertThat(vet.getSpecialties().get(1))
+            .isSameAs(EntityUtils.getById(vets, Vet.class, 4).getSpecialties().get(0));
+    }
+
+    @Test
+    void shouldFindVetByIdWithSingleStatement() {
+        Vet vet = this.vetRepository.findById(3);
+        assertThat(vet.getLastName()).isEqualTo("Douglas");
+        assertThat(vet.getNrOfSpecialties()).isEqualTo(2);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLoadAllVisitsWithSingleStatement() {
+        Collection<Visit> visits = this.visitRepository.findAll();
+        assertThat(visits).hasSize(4);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        Visit visit1 = EntityUtils.getById(visits, Visit.class, 1);
+        Visit visit2 = EntityUtils.getById(visits, Visit.class, 2);
+        Visit visit4 = EntityUtils.getById(visits, Visit.class, 4);
+        assertThat(visit1.getPet().getName()).isEqualTo("Samantha");
+        assertThat(visit1.getPet().getType().getName()).isEqualTo("cat");
+        assertThat(visit1.getPet().getOwner().getFirstName()).isEqualTo("Jean");
+        assertThat(visit4.getPet()).isSameAs(visit1.getPet());
+        assertThat(visit2.getPet().getOwner()).isSameAs(visit1.getPet().getOwner());
+        assertThat(visit2.getPet().getType()).isSameAs(visit1.getPet().getType());
+    }
+
+    @Test
+    void shouldFindVisitByIdWithSingleStatement() {
+        Visit visit = this.visitRepository.findById(3);
+        assertThat(visit.getDescription()).isEqualTo("neutered");
+        assertThat(visit.getPet().getName()).isEqualTo("Max");
+        assertThat(visit.getPet().getOwner().getLastName()).isEqualTo("Coleman");
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    @Transactional
+    void shouldFindPetByIdWithoutLoadingOtherPetsOfTheOwner() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(new Object[]{"Pet" + i, 1, 6});
+        }
+        this.jdbcTemplate.batchUpdate("INSERT INTO pets (name, type_id, owner_id) VALUES (?, ?, ?)", rows);
+        this.statementRecorder.reset();
+
+        Pet pet = this.petRepository.findById(7);
+        assertThat(pet.getName()).isEqualTo("Samantha");
+        assertThat(pet.getType().getName()).isEqualTo("cat");
+        assertThat(pet.getOwner().getFirstName()).isEqualTo("Jean");
+        assertThat(pet.getVisits()).hasSize(2);
+        // pet joined with its type and owner, then its visits
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    @Transactional
+    void shouldInsertVisitsInSingleBatch() {
+        Pet pet = this.petRepository.findById(7);
+        List<Visit> visits = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Visit visit = new Visit();
+            visit.setDescription("visit " + i);
+            pet.addVisit(visit);
+            visits.add(visit);
+        }
+        this.statementRecorder.reset();
+
+        this.visitRepository.saveAll(visits);
+        assertThat(visits).extracting(Visit::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(this.statementRecorder.getStatements())
+            .filteredOn(sql -> sql.startsWith("INSERT"))
+            .containsExactly("INSERT INTO visits (id, visit_date, description, pet_id) VALUES (?, ?, ?, ?)");
+        // the batched insert and one sequence call per block of IDs
+        assertThat(this.statementRecorder.count()).isLessThanOrEqualTo(1 + 120 / JdbcIdAllocator.BLOCK_SIZE + 1);
+        assertThat(this.visitRepository.findByPetId(7)).hasSize(122);
+    }
+
+    @Test
+    @Transactional
+    void shouldDeletePetTypeWithSetBasedStatements() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(new Object[]{"Pet" + i, 1, 6});
+        }
+        this.jdbcTemplate.batchUpdate("INSERT INTO pets (name, type_id, owner_id) VALUES (?, ?, ?)", rows);
+        PetType cat = this.petTypeRepository.findById(1);
+        this.statementRecorder.reset();
+
+        this.petTypeRepository.delete(cat);
+        // visits, pets and the type itself
+        assertThat(this.statementRecorder.count()).isEqualTo(3);
+        assertThat(this.jdbcTemplate.queryForObject("SELECT count(*) FROM pets WHERE type_id = 1", Integer.class)).isZero();
+        assertThat(this.jdbcTemplate.queryForObject("SELECT count(*) FROM visits", Integer.class)).isZero();
+    }
+
+    @Test
+    @Transactional
+    void shouldDeleteOwnerWithSetBasedStatements() {
+        Owner owner = this.ownerRepository.findById(6);
+        this.statementRecorder.reset();
+
+        this.ownerRepository.delete(owner);
+        assertThat(this.statementRecorder.count()).isEqualTo(3);
+        assertThat(this.jdbcTemplate.queryForObject("SELECT count(*) FROM pets WHERE owner_id = 6", Integer.class)).isZero();
+        assertThat(this.jdbcTemplate.queryForObject("SELECT count(*) FROM visits", Integer.class)).isZero();
+    }
+
+    @Test
+    @Transactional
+    void shouldNotWriteSpecialtiesOfUnchangedVet() {
+        Vet vet = this.vetRepository.findById(3);
+        this.statementRecorder.reset();
+
+        this.vetRepository.save(vet);
+        assertThat(this.statementRecorder.getStatements())
+            .noneMatch(sql -> sql.startsWith("INSERT") || sql.startsWith("DELETE"));
+    }
+
+    @Test
+    @Transactional
+    void shouldApplySpecialtyChangesAsDiff() {
+        Vet vet = this.vetRepository.findById(3);
+        Specialty radiology = new Specialty();
+        radiology.setId(1);
+        radiology.setName("radiology");
+        List<Specialty> specialties = new ArrayList<>(vet.getSpecialties());
+        specialties.removeIf(specialty -> specialty.getName().equals("surgery"));
+        specialties.add(radiology);
+        vet.setSpecialties(specialties);
+        this.statementRecorder.reset();
+
+        this.vetRepository.save(vet);
+        assertThat(this.statementRecorder.getStatements())
+            .filteredOn(sql -> sql.contains("vet_specialties") && !sql.startsWith("SELECT"))
+            .containsExactly(
+                "DELETE FROM vet_specialties WHERE vet_id=? AND specialty_id=?",
+                "INSERT INTO vet_specialties (vet_id, specialty_id) VALUES (?, ?)");
+        assertThat(this.vetRepository.findById(3).getSpecialties())
+            .extracting("name").containsExactly("dentistry", "radiology");
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcOperations;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for the parsing and positional binding of {@link JdbcStatement}.
+ */
+class JdbcStatementTests {
+
+    private final JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+
+    @Test
+    void shouldReplaceNamedParametersWithPlaceholders() {
+        JdbcStatement statement = new JdbcStatement(this.jdbcOperations, "UPDATE types SET name=:name WHERE id=:id");
+        assertThat(statement.getSql()).isEqualTo("UPDATE types SET name=? WHERE id=?");
+
+        statement.update("dog", 2);
+        verify(this.jdbcOperations).update("UPDATE types SET name=? WHERE id=?", "dog", 2);
+    }
+
+    @Test
+    void shouldBindRepeatedParameterFromSameArgument() {
+        JdbcStatement statement = new JdbcStatement(this.jdbcOperations,
+            "DELETE FROM visits WHERE pet_id=:id OR id IN (SELECT id FROM visits WHERE pet_id=:id AND description=:text)");
+
+        statement.update(7, "rabies shot");
+        verify(this.jdbcOperations).update(statement.getSql(), 7, 7, "rabies shot");
+    }
+
+    @Test
+    void shouldRejectWrongNumberOfArguments() {
+        JdbcStatement statement = new JdbcStatement(this.jdbcOperations, "DELETE FROM pets WHERE id=:id");
+        assertThatThrownBy(() -> statement.update(1, 2))
+            .isInstanceOf(InvalidDataAccessApiUsageException.class)
+            .hasMessageContaining("[id]");
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.PetType;
+
+/**
+ * JMH comparison of the index-based JDBC row mappers against the reflective {@link BeanPropertyRowMapper} they
+ * replaced, reading the same HSQLDB result sets. Run with {@code mvn test-compile -Pbenchmark -Djmh.args=RowMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    private static final String OWNERS = "SELECT id, first_name, last_name, address, city, telephone FROM owners";
+
+    private static final String TYPES = "SELECT id, name FROM types";
+
+    @Param({"1000"})
+    private int rows;
+
+    private EmbeddedDatabase database;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void createDatabase() {
+        this.database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.HSQL)
+            .addScript("db/hsqldb/initDB.sql")
+            .build();
+        this.jdbcTemplate = new JdbcTemplate(this.database);
+        List<Object[]> owners = new ArrayList<>();
+        List<Object[]> types = new ArrayList<>();
+        for (int i = 0; i < this.rows; i++) {
+            owners.add(new Object[]{"First" + i, "Last" + i, i + " Main St.", "Madison", "6085550000"});
+            types.add(new Object[]{"type" + i});
+        }
+        this.jdbcTemplate.batchUpdate(
+            "INSERT INTO owners (first_name, last_name, address, city, telephone) VALUES (?, ?, ?, ?, ?)", owners);
+        this.jdbcTemplate.batchUpdate("INSERT INTO types (name) VALUES (?)", types);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdownDatabase() {
+        this.database.shutdown();
+    }
+
+    @Benchmark
+    public List<Owner> ownersWithBeanPropertyRowMapper() {
+        return this.jdbcTemplate.query(OWNERS, BeanPropertyRowMapper.newInstance(Owner.class));
+    }
+
+    @Benchmark
+    public List<Owner> ownersWithOwnerRowMapper() {
+        return this.jdbcTemplate.query(OWNERS, new JdbcOwnerRowMapper());
+    }
+
+    @Benchmark
+    public List<PetType> petTypesWithBeanPropertyRowMapper() {
+        return this.jdbcTemplate.query(TYPES, BeanPropertyRowMapper.newInstance(PetType.class));
+    }
+
+    @Benchmark
+    public List<PetType> petTypesWithNamedEntityRowMapper() {
+        return this.jdbcTemplate.query(TYPES, new JdbcNamedEntityRowMapper<>(PetType::new));
+    }
+
+}
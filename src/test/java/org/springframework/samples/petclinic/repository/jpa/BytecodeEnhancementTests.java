@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jpa;
+
+import java.util.List;
+
+import jakarta.persistence.EntityManager;
+
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.ManagedEntity;
+import org.hibernate.engine.spi.SelfDirtinessTracker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.util.StatementRecorder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs in the default build, with plain entity classes, and in the <code>bytecode-enhancement</code> build, which
+ * enhances them and sets <code>petclinic.bytecode-enhanced</code>: the same assertions hold for both, apart from
+ * the check that the classes are enhanced in the build meant to do so.
+ */
+@SpringBootTest
+@ActiveProfiles({"jpa", "hsqldb"})
+@Import(StatementRecorder.class)
+@Transactional
+class BytecodeEnhancementTests {
+
+    private static final boolean ENHANCED = Boolean.getBoolean("petclinic.bytecode-enhanced");
+
+    @Autowired
+    private EntityManager em;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @BeforeEach
+    void resetRecorder() {
+        this.statementRecorder.reset();
+    }
+
+    @Test
+    void shouldEnhanceEntitiesOnlyInEnhancementBuild() {
+        for (Class<?> entity : List.of(Owner.class, Pet.class, Visit.class, Vet.class)) {
+            assertThat(ManagedEntity.class.isAssignableFrom(entity)).as(entity.getSimpleName()).isEqualTo(ENHANCED);
+            assertThat(SelfDirtinessTracker.class.isAssignableFrom(entity)).as(entity.getSimpleName())
+                .isEqualTo(ENHANCED);
+        }
+    }
+
+    @Test
+    void shouldUpdateOnlyChangedEntityOnFlush() {
+        List<Owner> owners = this.em.createQuery("SELECT owner FROM Owner owner", Owner.class).getResultList();
+        List<Pet> pets = this.em.createQuery("SELECT pet FROM Pet pet", Pet.class).getResultList();
+        assertThat(owners).hasSize(10);
+        assertThat(pets).hasSize(13);
+        Owner owner = this.em.find(Owner.class, 6);
+        owner.setCity("Sun Prairie");
+        if (ENHANCED) {
+            assertThat(((SelfDirtinessTracker) owner).$$_hibernate_getDirtyAttributes()).containsExactly("city");
+        }
+        this.statementRecorder.reset();
+
+        this.em.flush();
+        assertThat(this.statementRecorder.getStatements())
+            .singleElement().asString().startsWithIgnoringCase("update owners");
+
+        this.statementRecorder.reset();
+        this.em.flush();
+        assertThat(this.statementRecorder.count()).isZero();
+    }
+
+    @Test
+    void shouldLoadToOneAssociationsLazily() {
+        Pet pet = this.em.find(Pet.class, 7);
+        assertThat(Hibernate.isInitialized(pet.getOwner())).isFalse();
+        assertThat(pet.getOwner().getId()).isEqualTo(6);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        assertThat(pet.getOwner().getLastName()).isEqualTo("Coleman");
+        assertThat(Hibernate.isInitialized(pet.getOwner())).isTrue();
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldPersistPetAddedToOwnerWithItsVisit() {
+        Owner owner = this.em.find(Owner.class, 6);
+        Pet pet = new Pet();
+        pet.setName("Bowser");
+        pet.setType(this.em.getReference(PetType.class, 2));
+        owner.addPet(pet);
+        Visit visit = new Visit();
+        visit.setDescription("first checkup");
+        pet.addVisit(visit);
+        assertThat(owner.getPets()).contains(pet);
+        assertThat(pet.getOwner()).isSameAs(owner);
+        assertThat(visit.getPet()).isSameAs(pet);
+
+        this.em.persist(pet);
+        this.em.flush();
+        this.em.clear();
+        Owner reloaded = this.em.find(Owner.class, 6);
+        assertThat(reloaded.getPet("Bowser").getVisits()).extracting(Visit::getDescription)
+            .containsExactly("first checkup");
+    }
+
+}
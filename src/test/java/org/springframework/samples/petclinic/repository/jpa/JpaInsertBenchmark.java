@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jpa;
+
+import java.time.LocalDate;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * JMH measurement of JPA inserts per second, each transaction persisting owners together with a pet and a visit
+ * apiece. Compares the identity column ids used before against the pooled sequences, with and without JDBC
+ * batching. Run with {@code mvn test-compile -Pbenchmark -Djmh.args=JpaInsert}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpaInsertBenchmark {
+
+    private static final int OWNERS = 50;
+
+    /** Three rows per owner: the owner, its pet and the pet's visit. */
+    private static final int INSERTS = OWNERS * 3;
+
+    @Param({"identity", "sequence", "sequence-batched"})
+    private String ids;
+
+    private EmbeddedDatabase database;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private PetType type;
+
+    @Setup(Level.Trial)
+    public void createEntityManagerFactory() {
+        this.database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.HSQL)
+            .addScript("db/hsqldb/initDB.sql")
+            .build();
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.id.optimizer.pooled.preferred", "pooled-lo");
+        if (this.ids.equals("sequence-batched")) {
+            properties.setProperty("hibernate.jdbc.batch_size", "50");
+            properties.setProperty("hibernate.order_inserts", "true");
+            properties.setProperty("hibernate.order_updates", "true");
+        }
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(this.database);
+        factory.setPersistenceProviderClass(HibernatePersistenceProvider.class);
+        factory.setPackagesToScan("org.springframework.samples.petclinic.model");
+        if (this.ids.equals("identity")) {
+            factory.setMappingResources("db/benchmark/identity-orm.xml");
+        }
+        factory.setJpaProperties(properties);
+        factory.afterPropertiesSet();
+        this.entityManagerFactory = factory.getObject();
+
+        this.type = new PetType();
+        this.type.setName("hamster");
+        inTransaction(em -> em.persist(this.type));
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        this.entityManagerFactory.close();
+        this.database.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSERTS)
+    public void insertOwnersWithPetsAndVisits() {
+        inTransaction(em -> {
+            for (int i = 0; i < OWNERS; i++) {
+                Owner owner = new Owner();
+                owner.setFirstName("First" + i);
+                owner.setLastName("Last" + i);
+                owner.setAddress(i + " Main St.");
+                owner.setCity("Madison");
+                owner.setTelephone("6085550000");
+                Pet pet = new Pet();
+                pet.setName("Pet" + i);
+                pet.setBirthDate(LocalDate.of(2020, 1, 1));
+                pet.setType(em.getReference(PetType.class, this.type.getId()));
+                owner.addPet(pet);
+                Visit visit = new Visit();
+                visit.setDate(LocalDate.of(2024, 1, 1));
+                visit.setDescription("checkup");
+                pet.addVisit(visit);
+                em.persist(owner);
+            }
+        });
+    }
+
+    private void inTransaction(Consumer<EntityManager> work) {
+        EntityManager em = this.entityManagerFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            work.accept(em);
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.repository.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.samples.petclinic.model.Visit;
+
+/**
+ * JMH comparison of the ways to read all visits with their pets in one transaction: a regular session that dirty
+ * checks the entities on commit, a read-only session with manual flushing as set up for
+ * <code>@Transactional(readOnly = true)</code>, and the stateless session behind <code>findAllVisits</code>. Run with
+ * {@code mvn test-compile -Pbenchmark -Djmh.args="JpaRead -prof gc"} to see the bytes allocated per read as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JpaReadBenchmark {
+
+    private static final String VISITS_WITH_PETS = "SELECT v FROM Visit v JOIN FETCH v.pet";
+
+    @Param({"1000"})
+    private int visits;
+
+    private EmbeddedDatabase database;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void createEntityManagerFactory() {
+        this.database = new EmbeddedDatabaseBuilder()
+            .generateUniqueName(true)
+            .setType(EmbeddedDatabaseType.HSQL)
+            .addScript("db/hsqldb/initDB.sql")
+            .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(this.database);
+        jdbcTemplate.update("INSERT INTO types (id, name) VALUES (1, 'cat')");
+        jdbcTemplate.update("INSERT INTO owners (id, first_name, last_name, address, city, telephone) " +
+            "VALUES (1, 'Jean', 'Coleman', '105 N. Lake St.', 'Monona', '6085552654')");
+        List<Object[]> pets = new ArrayList<>();
+        List<Object[]> visits = new ArrayList<>();
+        for (int i = 1; i <= this.visits; i++) {
+            if (i % 10 == 1) {
+                pets.add(new Object[]{i, "Pet" + i});
+            }
+            visits.add(new Object[]{i, i - (i - 1) % 10, "visit " + i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO pets (id, name, type_id, owner_id) VALUES (?, ?, 1, 1)", pets);
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO visits (id, pet_id, visit_date, description) VALUES (?, ?, CURRENT_DATE, ?)", visits);
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(this.database);
+        factory.setPersistenceProviderClass(HibernatePersistenceProvider.class);
+        factory.setPackagesToScan("org.springframework.samples.petclinic.model");
+        factory.afterPropertiesSet();
+        this.entityManagerFactory = factory.getObject();
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        this.entityManagerFactory.close();
+        this.database.shutdown();
+    }
+
+    @Benchmark
+    public List<Visit> readWriteSession() {
+        return inTransaction(false, em -> em.createQuery(VISITS_WITH_PETS, Visit.class).getResultList());
+    }
+
+    @Benchmark
+    public List<Visit> readOnlySession() {
+        return inTransaction(true, em -> em.createQuery(VISITS_WITH_PETS, Visit.class).getResultList());
+    }
+
+    @Benchmark
+    public List<Visit> statelessSession() {
+        return inTransaction(true, em -> JpaStatelessReads.list(em, VISITS_WITH_PETS, Visit.class));
+    }
+
+    /**
+     * Runs the read in a transaction, set up read-only the way Spring's <code>HibernateJpaDialect</code> does for
+     * <code>@Transactional(readOnly = true)</code>.
+     */
+    private List<Visit> inTransaction(boolean readOnly, Function<EntityManager, List<Visit>> read) {
+        EntityManager em = this.entityManagerFactory.createEntityManager();
+        try {
+            if (readOnly) {
+                Session session = em.unwrap(Session.class);
+                session.setDefaultReadOnly(true);
+                session.setHibernateFlushMode(FlushMode.MANUAL);
+            }
+            em.getTransaction().begin();
+            List<Visit> result = read.apply(em);
+            em.getTransaction().commit();
+            return result;
+        } finally {
+            em.close();
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.rest.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonResponseCacheTests {
+
+    @Test
+    void shouldAcceptGzipNamedOrThroughWildcard() {
+        assertThat(JsonResponseCache.acceptsGzip("gzip, deflate")).isTrue();
+        assertThat(JsonResponseCache.acceptsGzip("deflate;q=1.0, GZIP;q=0.5")).isTrue();
+        assertThat(JsonResponseCache.acceptsGzip("x-gzip")).isTrue();
+        assertThat(JsonResponseCache.acceptsGzip("br, *;q=0.1")).isTrue();
+    }
+
+    @Test
+    void shouldRefuseGzipWithZeroQuality() {
+        assertThat(JsonResponseCache.acceptsGzip(null)).isFalse();
+        assertThat(JsonResponseCache.acceptsGzip("identity")).isFalse();
+        assertThat(JsonResponseCache.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(JsonResponseCache.acceptsGzip("gzip; q=0.000, *")).isFalse();
+        assertThat(JsonResponseCache.acceptsGzip("br, *;q=0")).isFalse();
+        assertThat(JsonResponseCache.acceptsGzip("gzip;q=high")).isFalse();
+        assertThat(JsonResponseCache.acceptsGzip("not-gzip")).isFalse();
+    }
+
+}
@@ -21,16 +21,20 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.samples.petclinic.mapper.OwnerMapper;
 import org.springframework.samples.petclinic.mapper.PetMapper;
 import org.springframework.samples.petclinic.mapper.VisitMapper;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Owner;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
+import org.springframework.samples.petclinic.rest.advice.FieldsetResponseBodyAdvice;
 import org.springframework.samples.petclinic.rest.dto.OwnerDto;
 import org.springframework.samples.petclinic.rest.dto.PetDto;
 import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
@@ -47,9 +51,14 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -64,6 +73,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebAppConfiguration
 class OwnerRestControllerTests {
 
+    private static final Set<Association> PETS_AND_VISITS = EnumSet.of(Association.PETS, Association.VISITS);
+
     @Autowired
     private OwnerRestController ownerRestController;
 
@@ -76,6 +87,9 @@ class OwnerRestControllerTests {
     @Autowired
     private VisitMapper visitMapper;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @MockBean
     private ClinicService clinicService;
 
@@ -136,6 +150,13 @@ class OwnerRestControllerTests {
         visits.add(visit);
     }
 
+    private MockMvc mockMvcWithFieldsets() {
+        return MockMvcBuilders.standaloneSetup(ownerRestController)
+            .setControllerAdvice(new ExceptionControllerAdvice(), new FieldsetResponseBodyAdvice())
+            .setMessageConverters(new MappingJackson2HttpMessageConverter(this.objectMapper))
+            .build();
+    }
+
     private PetDto getTestPetWithIdAndName(final OwnerDto owner, final int id, final String name) {
         PetTypeDto petType = new PetTypeDto();
         PetDto pet = new PetDto();
@@ -151,7 +172,7 @@ class OwnerRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetOwnerSuccess() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(ownerMapper.toOwner(owners.get(0)));
+        given(this.clinicService.findOwnerById(1, PETS_AND_VISITS)).willReturn(ownerMapper.toOwner(owners.get(0)));
         this.mockMvc.perform(get("/api/owners/1")
                 .accept(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(status().isOk())
@@ -160,10 +181,72 @@ class OwnerRestControllerTests {
             .andExpect(jsonPath("$.firstName").value("George"));
     }
 
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnerNotModified() throws Exception {
+        given(this.clinicService.getOwnerVersion(1)).willReturn(3L);
+        given(this.clinicService.findOwnerById(1, PETS_AND_VISITS)).willReturn(ownerMapper.toOwner(owners.get(0)));
+        String etag = this.mockMvc.perform(get("/api/owners/1")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn().getResponse().getHeader("ETag");
+        this.mockMvc.perform(get("/api/owners/1")
+                .accept(MediaType.APPLICATION_JSON_VALUE)
+                .header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("ETag", etag))
+            .andExpect(content().string(""));
+        verify(this.clinicService, times(1)).findOwnerById(1, PETS_AND_VISITS);
+
+        given(this.clinicService.getOwnerVersion(1)).willReturn(4L);
+        this.mockMvc.perform(get("/api/owners/1")
+                .accept(MediaType.APPLICATION_JSON_VALUE)
+                .header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnerWithSparseFieldset() throws Exception {
+        given(this.clinicService.findOwnerById(1, EnumSet.of(Association.PETS)))
+            .willReturn(ownerMapper.toOwner(owners.get(0)));
+        mockMvcWithFieldsets().perform(get("/api/owners/1?fields=lastName,pets&include=pets")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(1))
+            .andExpect(jsonPath("$.lastName").value("Franklin"))
+            .andExpect(jsonPath("$.firstName").doesNotExist())
+            .andExpect(jsonPath("$.pets[0].name").value("Rosy"))
+            .andExpect(jsonPath("$.pets[0].visits").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnersWithoutPets() throws Exception {
+        given(this.clinicService.findAllOwners(0, 101, EnumSet.noneOf(Association.class)))
+            .willReturn(ownerMapper.toOwners(owners));
+        mockMvcWithFieldsets().perform(get("/api/owners?fields=firstName,lastName")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].firstName").value("George"))
+            .andExpect(jsonPath("$.[0].address").doesNotExist())
+            .andExpect(jsonPath("$.[0].pets").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnerWithUnknownField() throws Exception {
+        mockMvcWithFieldsets().perform(get("/api/owners/1?fields=salary")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetOwnerNotFound() throws Exception {
-        given(this.clinicService.findOwnerById(2)).willReturn(null);
+        given(this.clinicService.findOwnerById(2, PETS_AND_VISITS)).willReturn(null);
         this.mockMvc.perform(get("/api/owners/2")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -174,7 +257,7 @@ class OwnerRestControllerTests {
     void testGetOwnersListSuccess() throws Exception {
         owners.remove(0);
         owners.remove(1);
-        given(this.clinicService.findOwnerByLastName("Davis")).willReturn(ownerMapper.toOwners(owners));
+        given(this.clinicService.findOwnerByLastName("Davis", 0, 101, PETS_AND_VISITS)).willReturn(ownerMapper.toOwners(owners));
         this.mockMvc.perform(get("/api/owners?lastName=Davis")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -189,7 +272,7 @@ class OwnerRestControllerTests {
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetOwnersListNotFound() throws Exception {
         owners.clear();
-        given(this.clinicService.findOwnerByLastName("0")).willReturn(ownerMapper.toOwners(owners));
+        given(this.clinicService.findOwnerByLastName("0", 0, 101, PETS_AND_VISITS)).willReturn(ownerMapper.toOwners(owners));
         this.mockMvc.perform(get("/api/owners/?lastName=0")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -200,7 +283,7 @@ class OwnerRestControllerTests {
     void testGetAllOwnersSuccess() throws Exception {
         owners.remove(0);
         owners.remove(1);
-        given(this.clinicService.findAllOwners()).willReturn(ownerMapper.toOwners(owners));
+        given(this.clinicService.findAllOwners(0, 101, PETS_AND_VISITS)).willReturn(ownerMapper.toOwners(owners));
         this.mockMvc.perform(get("/api/owners/")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -215,12 +298,44 @@ class OwnerRestControllerTests {
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetAllOwnersNotFound() throws Exception {
         owners.clear();
-        given(this.clinicService.findAllOwners()).willReturn(ownerMapper.toOwners(owners));
+        given(this.clinicService.findAllOwners(0, 101, PETS_AND_VISITS)).willReturn(ownerMapper.toOwners(owners));
         this.mockMvc.perform(get("/api/owners/")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnersPageWithNextCursor() throws Exception {
+        given(this.clinicService.findAllOwners(1, 3, PETS_AND_VISITS)).willReturn(ownerMapper.toOwners(owners.subList(1, 4)));
+        this.mockMvc.perform(get("/api/owners/?after=1&limit=2")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Next-Cursor", "3"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(2))
+            .andExpect(jsonPath("$.[1].id").value(3));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetLastOwnersPageWithoutNextCursor() throws Exception {
+        given(this.clinicService.findAllOwners(2, 3, PETS_AND_VISITS)).willReturn(ownerMapper.toOwners(owners.subList(2, 4)));
+        this.mockMvc.perform(get("/api/owners/?after=2&limit=2")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Next-Cursor"))
+            .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetOwnersPageWithInvalidLimit() throws Exception {
+        this.mockMvc.perform(get("/api/owners/?limit=0")
+                .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testCreateOwnerSuccess() throws Exception {
@@ -253,7 +368,8 @@ class OwnerRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testUpdateOwnerSuccess() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(ownerMapper.toOwner(owners.get(0)));
+        Owner owner = ownerMapper.toOwner(owners.get(0));
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
         int ownerId = owners.get(0).getId();
         OwnerDto updatedOwnerDto = new OwnerDto();
         // body.id = ownerId which is used in url path
@@ -272,6 +388,12 @@ class OwnerRestControllerTests {
             .andExpect(content().contentType("application/json"))
             .andExpect(status().isNoContent());
 
+        ArgumentCaptor<Owner> saved = ArgumentCaptor.forClass(Owner.class);
+        verify(this.clinicService).saveOwner(saved.capture());
+        assertThat(saved.getValue()).isNotSameAs(owner);
+        assertThat(owner.getFirstName()).isEqualTo("George");
+        given(this.clinicService.findOwnerById(1, PETS_AND_VISITS)).willReturn(saved.getValue());
+
         this.mockMvc.perform(get("/api/owners/" + ownerId)
                 .accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(status().isOk())
@@ -284,7 +406,8 @@ class OwnerRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testUpdateOwnerSuccessNoBodyId() throws Exception {
-        given(this.clinicService.findOwnerById(1)).willReturn(ownerMapper.toOwner(owners.get(0)));
+        Owner owner = ownerMapper.toOwner(owners.get(0));
+        given(this.clinicService.findOwnerById(1)).willReturn(owner);
         int ownerId = owners.get(0).getId();
         OwnerDto updatedOwnerDto = new OwnerDto();
         updatedOwnerDto.setFirstName("GeorgeI");
@@ -300,6 +423,10 @@ class OwnerRestControllerTests {
             .andExpect(content().contentType("application/json"))
             .andExpect(status().isNoContent());
 
+        ArgumentCaptor<Owner> saved = ArgumentCaptor.forClass(Owner.class);
+        verify(this.clinicService).saveOwner(saved.capture());
+        given(this.clinicService.findOwnerById(1, PETS_AND_VISITS)).willReturn(saved.getValue());
+
         this.mockMvc.perform(get("/api/owners/" + ownerId)
                 .accept(MediaType.APPLICATION_JSON).contentType(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(status().isOk())
@@ -401,7 +528,7 @@ class OwnerRestControllerTests {
     void testGetOwnerPetSuccess() throws Exception {
         owners.remove(0);
         owners.remove(1);
-        given(this.clinicService.findAllOwners()).willReturn(ownerMapper.toOwners(owners));
+        given(this.clinicService.findAllOwners(0, 101)).willReturn(ownerMapper.toOwners(owners));
         var owner = ownerMapper.toOwner(owners.get(0));
         given(this.clinicService.findOwnerById(2)).willReturn(owner);
         var pet = petMapper.toPet(pets.get(0));
@@ -417,7 +544,7 @@ class OwnerRestControllerTests {
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetOwnersPetsNotFound() throws Exception {
         owners.clear();
-        given(this.clinicService.findAllOwners()).willReturn(ownerMapper.toOwners(owners));
+        given(this.clinicService.findAllOwners(0, 101)).willReturn(ownerMapper.toOwners(owners));
         this.mockMvc.perform(get("/api/owners/1/pets/1")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -25,9 +25,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.samples.petclinic.mapper.PetMapper;
+import org.springframework.samples.petclinic.model.Association;
 import org.springframework.samples.petclinic.model.Pet;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
+import org.springframework.samples.petclinic.rest.advice.FieldsetResponseBodyAdvice;
 import org.springframework.samples.petclinic.rest.dto.OwnerDto;
 import org.springframework.samples.petclinic.rest.dto.PetDto;
 import org.springframework.samples.petclinic.rest.dto.PetTypeDto;
@@ -43,7 +46,9 @@ import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.when;
@@ -62,12 +67,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @WebAppConfiguration
 class PetRestControllerTests {
 
+    private static final Set<Association> VISITS = EnumSet.of(Association.VISITS);
+
     @MockBean
     protected ClinicService clinicService;
+
     @Autowired
     private PetRestController petRestController;
     @Autowired
     private PetMapper petMapper;
+    @Autowired
+    private ObjectMapper objectMapper;
     private MockMvc mockMvc;
 
     private List<PetDto> pets;
@@ -106,7 +116,7 @@ class PetRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetPetSuccess() throws Exception {
-        given(this.clinicService.findPetById(3)).willReturn(petMapper.toPet(pets.get(0)));
+        given(this.clinicService.findPetById(3, VISITS)).willReturn(petMapper.toPet(pets.get(0)));
         this.mockMvc.perform(get("/api/pets/3")
                 .accept(MediaType.APPLICATION_JSON_VALUE))
             .andExpect(status().isOk())
@@ -115,6 +125,25 @@ class PetRestControllerTests {
             .andExpect(jsonPath("$.name").value("Rosy"));
     }
 
+    @Test
+    @WithMockUser(roles = "OWNER_ADMIN")
+    void testGetPetWithSparseFieldset() throws Exception {
+        given(this.clinicService.findPetById(3, EnumSet.noneOf(Association.class)))
+            .willReturn(petMapper.toPet(pets.get(0)));
+        MockMvcBuilders.standaloneSetup(petRestController)
+            .setControllerAdvice(new ExceptionControllerAdvice(), new FieldsetResponseBodyAdvice())
+            .setMessageConverters(new MappingJackson2HttpMessageConverter(this.objectMapper))
+            .build()
+            .perform(get("/api/pets/3?fields=name,type")
+                .accept(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(3))
+            .andExpect(jsonPath("$.name").value("Rosy"))
+            .andExpect(jsonPath("$.type.name").value("dog"))
+            .andExpect(jsonPath("$.birthDate").doesNotExist())
+            .andExpect(jsonPath("$.visits").doesNotExist());
+    }
+
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetPetNotFound() throws Exception {
@@ -129,8 +158,8 @@ class PetRestControllerTests {
     void testGetAllPetsSuccess() throws Exception {
         final Collection<Pet> pets = petMapper.toPets(this.pets);
         System.err.println(pets);
-        when(this.clinicService.findAllPets()).thenReturn(pets);
-        //given(this.clinicService.findAllPets()).willReturn(petMapper.toPets(pets));
+        when(this.clinicService.findAllPets(0, 101, VISITS)).thenReturn(pets);
+        //given(this.clinicService.findAllPets(0, 101)).willReturn(petMapper.toPets(pets));
         this.mockMvc.perform(get("/api/pets/")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -145,7 +174,7 @@ class PetRestControllerTests {
     @WithMockUser(roles = "OWNER_ADMIN")
     void testGetAllPetsNotFound() throws Exception {
         pets.clear();
-        given(this.clinicService.findAllPets()).willReturn(petMapper.toPets(pets));
+        given(this.clinicService.findAllPets(0, 101, VISITS)).willReturn(petMapper.toPets(pets));
         this.mockMvc.perform(get("/api/pets/")
                 .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -154,7 +183,9 @@ class PetRestControllerTests {
     @Test
     @WithMockUser(roles = "OWNER_ADMIN")
     void testUpdatePetSuccess() throws Exception {
-        given(this.clinicService.findPetById(3)).willReturn(petMapper.toPet(pets.get(0)));
+        Pet pet = petMapper.toPet(pets.get(0));
+        given(this.clinicService.findPetById(3)).willReturn(pet);
+        given(this.clinicService.findPetById(3, VISITS)).willReturn(pet);
         PetDto newPet = pets.get(0);
         newPet.setName("Rosy I");
         ObjectMapper mapper = new ObjectMapper();
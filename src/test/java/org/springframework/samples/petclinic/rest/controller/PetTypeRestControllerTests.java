@@ -22,6 +22,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.mapper.PetTypeMapper;
 import org.springframework.samples.petclinic.model.PetType;
@@ -39,7 +40,10 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -60,6 +64,9 @@ class PetTypeRestControllerTests {
     @Autowired
     private PetTypeMapper petTypeMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
     @MockBean
     private ClinicService clinicService;
 
@@ -72,6 +79,7 @@ class PetTypeRestControllerTests {
     	this.mockMvc = MockMvcBuilders.standaloneSetup(petTypeRestController)
     			.setControllerAdvice(new ExceptionControllerAdvice())
     			.build();
+    	this.cacheManager.getCacheNames().forEach(cache -> this.cacheManager.getCache(cache).clear());
     	petTypes = new ArrayList<PetType>();
 
     	PetType petType = new PetType();
@@ -133,7 +141,7 @@ class PetTypeRestControllerTests {
     void testGetAllPetTypesSuccessAsOwnerAdmin() throws Exception {
     	petTypes.remove(0);
     	petTypes.remove(1);
-    	given(this.clinicService.findAllPetTypes()).willReturn(petTypes);
+    	given(this.clinicService.findAllPetTypes(0, 101)).willReturn(petTypes);
         this.mockMvc.perform(get("/api/pettypes/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -149,7 +157,7 @@ class PetTypeRestControllerTests {
     void testGetAllPetTypesSuccessAsVetAdmin() throws Exception {
         petTypes.remove(0);
         petTypes.remove(1);
-        given(this.clinicService.findAllPetTypes()).willReturn(petTypes);
+        given(this.clinicService.findAllPetTypes(0, 101)).willReturn(petTypes);
         this.mockMvc.perform(get("/api/pettypes/")
             .accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -164,7 +172,7 @@ class PetTypeRestControllerTests {
     @WithMockUser(roles="VET_ADMIN")
     void testGetAllPetTypesNotFound() throws Exception {
     	petTypes.clear();
-    	given(this.clinicService.findAllPetTypes()).willReturn(petTypes);
+    	given(this.clinicService.findAllPetTypes(0, 101)).willReturn(petTypes);
         this.mockMvc.perform(get("/api/pettypes/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -226,6 +234,21 @@ class PetTypeRestControllerTests {
             .andExpect(jsonPath("$.name").value("dog I"));
     }
 
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testUpdatePetTypeLeavesTheFoundInstanceAlone() throws Exception {
+        PetType found = petTypes.get(1);
+        given(this.clinicService.findPetTypeById(2)).willReturn(found);
+        PetTypeDto petTypeDto = petTypeMapper.toPetTypeDto(found).name("dog I");
+        this.mockMvc.perform(put("/api/pettypes/2")
+            .content(new ObjectMapper().writeValueAsString(petTypeDto))
+            .accept(MediaType.APPLICATION_JSON_VALUE).contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(status().isNoContent());
+        assertThat(found.getName()).isEqualTo("dog");
+        verify(this.clinicService).savePetType(argThat(saved -> saved != found
+            && saved.getId() == 2 && "dog I".equals(saved.getName())));
+    }
+
     @Test
     @WithMockUser(roles="VET_ADMIN")
     void testUpdatePetTypeError() throws Exception {
@@ -22,6 +22,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
 import org.springframework.samples.petclinic.mapper.SpecialtyMapper;
 import org.springframework.samples.petclinic.model.Specialty;
@@ -58,6 +59,9 @@ class SpecialtyRestControllerTests {
     @Autowired
     private SpecialtyMapper specialtyMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
 	@MockBean
     private ClinicService clinicService;
 
@@ -70,6 +74,7 @@ class SpecialtyRestControllerTests {
     	this.mockMvc = MockMvcBuilders.standaloneSetup(specialtyRestController)
     			.setControllerAdvice(new ExceptionControllerAdvice())
     			.build();
+    	this.cacheManager.getCacheNames().forEach(cache -> this.cacheManager.getCache(cache).clear());
     	specialties = new ArrayList<Specialty>();
 
     	Specialty specialty = new Specialty();
@@ -114,7 +119,7 @@ class SpecialtyRestControllerTests {
     @WithMockUser(roles="VET_ADMIN")
     void testGetAllSpecialtysSuccess() throws Exception {
     	specialties.remove(0);
-    	given(this.clinicService.findAllSpecialties()).willReturn(specialties);
+    	given(this.clinicService.findAllSpecialties(0, 101)).willReturn(specialties);
         this.mockMvc.perform(get("/api/specialties/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -129,7 +134,7 @@ class SpecialtyRestControllerTests {
     @WithMockUser(roles="VET_ADMIN")
     void testGetAllSpecialtysNotFound() throws Exception {
     	specialties.clear();
-    	given(this.clinicService.findAllSpecialties()).willReturn(specialties);
+    	given(this.clinicService.findAllSpecialties(0, 101)).willReturn(specialties);
         this.mockMvc.perform(get("/api/specialties/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
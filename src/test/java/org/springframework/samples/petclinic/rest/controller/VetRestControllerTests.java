@@ -22,10 +22,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
 import org.springframework.http.MediaType;
+import org.springframework.samples.petclinic.config.CachingConfig;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.samples.petclinic.mapper.VetMapper;
 import org.springframework.samples.petclinic.model.Vet;
 import org.springframework.samples.petclinic.rest.advice.ExceptionControllerAdvice;
+import org.springframework.samples.petclinic.rest.advice.FieldsetResponseBodyAdvice;
 import org.springframework.samples.petclinic.rest.controller.VetRestController;
 import org.springframework.samples.petclinic.service.ClinicService;
 import org.springframework.samples.petclinic.service.clinicService.ApplicationTestConfig;
@@ -33,12 +37,21 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -58,6 +71,12 @@ class VetRestControllerTests {
     @Autowired
     private VetMapper vetMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
 	@MockBean
     private ClinicService clinicService;
 
@@ -70,6 +89,7 @@ class VetRestControllerTests {
     	this.mockMvc = MockMvcBuilders.standaloneSetup(vetRestController)
     			.setControllerAdvice(new ExceptionControllerAdvice())
     			.build();
+    	this.cacheManager.getCacheNames().forEach(cache -> this.cacheManager.getCache(cache).clear());
     	vets = new ArrayList<Vet>();
 
 
@@ -116,7 +136,7 @@ class VetRestControllerTests {
     @Test
     @WithMockUser(roles="VET_ADMIN")
     void testGetAllVetsSuccess() throws Exception {
-    	given(this.clinicService.findAllVets()).willReturn(vets);
+    	given(this.clinicService.findAllVets(0, 101)).willReturn(vets);
         this.mockMvc.perform(get("/api/vets/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -127,11 +147,127 @@ class VetRestControllerTests {
             .andExpect(jsonPath("$.[1].firstName").value("Helen"));
     }
 
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testGetAllVetsServedFromResponseCache() throws Exception {
+        given(this.clinicService.findAllVets(0, 101)).willReturn(vets);
+        String json = this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+            .andReturn().getResponse().getContentAsString();
+        MvcResult gzipped = this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("Accept-Encoding", "gzip, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/json"))
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn();
+        try (GZIPInputStream body = new GZIPInputStream(
+            new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+            assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(json);
+        }
+        this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("Accept-Encoding", "gzip;q=0, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("Content-Encoding"))
+            .andExpect(content().string(json));
+        verify(this.clinicService, times(1)).findAllVets(0, 101);
+        // weighed by the bytes of the identity and gzip pages held off the heap
+        assertThat(((com.github.benmanes.caffeine.cache.Cache<?, ?>) this.cacheManager
+            .getCache(CachingConfig.VET_RESPONSES).getNativeCache()).policy().eviction().orElseThrow().weightedSize()
+            .getAsLong()).isGreaterThan(json.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testGetAllVetsWithSparseFieldsetBypassesResponseCache() throws Exception {
+        given(this.clinicService.findAllVets(0, 101)).willReturn(vets);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(vetRestController)
+            .setControllerAdvice(new ExceptionControllerAdvice(), new FieldsetResponseBodyAdvice())
+            .setMessageConverters(new MappingJackson2HttpMessageConverter(this.objectMapper))
+            .build();
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/vets/?fields=lastName")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[0].id").value(1))
+                .andExpect(jsonPath("$.[0].lastName").value("Carter"))
+                .andExpect(jsonPath("$.[0].firstName").doesNotExist())
+                .andExpect(jsonPath("$.[0].specialties").doesNotExist());
+        }
+        verify(this.clinicService, times(2)).findAllVets(0, 101);
+    }
+
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testGetAllVetsNotModified() throws Exception {
+        given(this.clinicService.getVersion(Vet.class)).willReturn(5L);
+        given(this.clinicService.findAllVets(0, 101)).willReturn(vets);
+        String etag = this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+        // served from the response cache, with the tag it was built with
+        this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andExpect(header().stringValues("ETag", etag));
+        this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("If-None-Match", etag))
+            .andExpect(status().isNotModified());
+        verify(this.clinicService, times(1)).findAllVets(0, 101);
+
+        given(this.clinicService.getVersion(Vet.class)).willReturn(6L);
+        this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", not(etag)));
+        verify(this.clinicService, times(2)).findAllVets(0, 101);
+    }
+
+    @Test
+    @WithMockUser(roles="VET_ADMIN")
+    void testGetAllVetsTaggedPerCodingAndFieldset() throws Exception {
+        given(this.clinicService.getVersion(Vet.class)).willReturn(5L);
+        given(this.clinicService.findAllVets(0, 101)).willReturn(vets);
+        String etag = this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+        String gzipEtag = this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("Accept-Encoding", "gzip")
+            .header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Encoding", "gzip"))
+            .andReturn().getResponse().getHeader("ETag");
+        String sparseEtag = this.mockMvc.perform(get("/api/vets/?fields=lastName")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader("ETag");
+        assertThat(List.of(etag, gzipEtag, sparseEtag)).doesNotHaveDuplicates().allMatch(tag -> tag.startsWith("\""));
+
+        this.mockMvc.perform(get("/api/vets/")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("Accept-Encoding", "gzip")
+            .header("If-None-Match", gzipEtag))
+            .andExpect(status().isNotModified());
+        this.mockMvc.perform(get("/api/vets/?fields=lastName")
+            .accept(MediaType.APPLICATION_JSON)
+            .header("If-None-Match", sparseEtag))
+            .andExpect(status().isNotModified());
+    }
+
     @Test
     @WithMockUser(roles="VET_ADMIN")
     void testGetAllVetsNotFound() throws Exception {
     	vets.clear();
-    	given(this.clinicService.findAllVets()).willReturn(vets);
+    	given(this.clinicService.findAllVets(0, 101)).willReturn(vets);
         this.mockMvc.perform(get("/api/vets/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -37,13 +37,18 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -139,7 +144,7 @@ class VisitRestControllerTests {
     @Test
     @WithMockUser(roles="OWNER_ADMIN")
     void testGetAllVisitsSuccess() throws Exception {
-    	given(this.clinicService.findAllVisits()).willReturn(visits);
+    	given(this.clinicService.findAllVisits(0, 101)).willReturn(visits);
         this.mockMvc.perform(get("/api/visits/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isOk())
@@ -150,11 +155,46 @@ class VisitRestControllerTests {
         	.andExpect(jsonPath("$.[1].description").value("neutered"));
     }
 
+    @Test
+    @WithMockUser(roles="OWNER_ADMIN")
+    void testGetAllVisitsWithoutAcceptHeader() throws Exception {
+        given(this.clinicService.findAllVisits(0, 101)).willReturn(visits);
+        this.mockMvc.perform(get("/api/visits"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/json"))
+            .andExpect(jsonPath("$.[1].id").value(3));
+    }
+
+    @Test
+    @WithMockUser(roles="OWNER_ADMIN")
+    @SuppressWarnings("unchecked")
+    void testStreamAllVisitsAsNdjson() throws Exception {
+        willAnswer(invocation -> {
+            visits.forEach(invocation.<Consumer<Visit>>getArgument(0));
+            return null;
+        }).given(this.clinicService).streamAllVisits(any(Consumer.class));
+        MvcResult result = this.mockMvc.perform(get("/api/visits")
+                .accept(MediaType.APPLICATION_NDJSON))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = this.mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString();
+        assertThat(body).endsWith("\n");
+        String[] rows = body.split("\n");
+        assertThat(rows).hasSize(2);
+        ObjectMapper mapper = new ObjectMapper();
+        assertThat(mapper.readTree(rows[0]).get("id").asInt()).isEqualTo(2);
+        assertThat(mapper.readTree(rows[0]).get("description").asText()).isEqualTo("rabies shot");
+        assertThat(mapper.readTree(rows[1]).get("id").asInt()).isEqualTo(3);
+    }
+
     @Test
     @WithMockUser(roles="OWNER_ADMIN")
     void testGetAllVisitsNotFound() throws Exception {
     	visits.clear();
-    	given(this.clinicService.findAllVisits()).willReturn(visits);
+    	given(this.clinicService.findAllVisits(0, 101)).willReturn(visits);
         this.mockMvc.perform(get("/api/visits/")
         	.accept(MediaType.APPLICATION_JSON))
             .andExpect(status().isNotFound());
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OwnerSearchesTests {
+
+    @Test
+    void shouldMatchPrefixesWhateverTheCollation() {
+        assertThat(OwnerSearches.matches("Dav", "Davis")).isTrue();
+        assertThat(OwnerSearches.matches("", "Davis")).isTrue();
+        assertThat(OwnerSearches.matches("dav", "Davis")).isTrue();
+        assertThat(OwnerSearches.matches("Este", "Estéban")).isTrue();
+        assertThat(OwnerSearches.matches("Davis", "Dav")).isFalse();
+        assertThat(OwnerSearches.matches("Fr", "Davis")).isFalse();
+    }
+
+    @Test
+    void shouldMatchAnyNameWithWildcardPrefixes() {
+        assertThat(OwnerSearches.matches("D_v", "Davis")).isTrue();
+        assertThat(OwnerSearches.matches("%is", "Franklin")).isTrue();
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.samples.petclinic.model.Vet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VetRosterTests {
+
+    private final CaffeineCache cache = new CaffeineCache("vets", Caffeine.newBuilder().build(), false);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final Queue<Runnable> refreshes = new ArrayDeque<>();
+
+    /**
+     * Loads a roster of vets 1 to 4, whose last names tell the load they came from.
+     */
+    private Collection<Vet> loadRoster() {
+        int load = this.loads.incrementAndGet();
+        List<Vet> vets = new ArrayList<>();
+        for (int id = 4; id >= 1; id--) {
+            Vet vet = new Vet();
+            vet.setId(id);
+            vet.setLastName("load " + load);
+            vets.add(vet);
+        }
+        return vets;
+    }
+
+    @Test
+    void shouldCoalesceConcurrentMisses() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        VetRoster roster = new VetRoster(this.cache, () -> {
+            loading.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return loadRoster();
+        }, Duration.ofHours(1), Runnable::run);
+
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Vet>>> reads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(readers.submit(roster::all));
+            }
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+            release.countDown();
+            List<Vet> first = reads.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<List<Vet>> read : reads) {
+                assertThat(read.get(10, TimeUnit.SECONDS)).isSameAs(first);
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+        assertThat(this.loads).hasValue(1);
+    }
+
+    @Test
+    void shouldServeStaleRosterWhileRefreshing() {
+        VetRoster roster = new VetRoster(this.cache, this::loadRoster, Duration.ZERO, this.refreshes::add);
+        assertThat(roster.all()).extracting(Vet::getLastName).containsOnly("load 1");
+
+        // the snapshot is due for a refresh at once, but only one is started and the old one is served meanwhile
+        assertThat(roster.all()).extracting(Vet::getLastName).containsOnly("load 1");
+        assertThat(roster.page(0, 2)).extracting(Vet::getLastName).containsOnly("load 1");
+        assertThat(this.refreshes).hasSize(1);
+        assertThat(this.loads).hasValue(1);
+
+        this.refreshes.poll().run();
+        assertThat(this.loads).hasValue(2);
+        assertThat(roster.all()).extracting(Vet::getLastName).containsOnly("load 2");
+    }
+
+    @Test
+    void shouldDiscardRefreshOfInvalidatedRoster() {
+        VetRoster roster = new VetRoster(this.cache, this::loadRoster, Duration.ZERO, this.refreshes::add);
+        roster.all();
+        roster.all();
+        roster.invalidate();
+
+        // started before the write, so the refreshed roster may not include it
+        this.refreshes.poll().run();
+        assertThat(this.cache.get("all")).isNull();
+        assertThat(roster.all()).extracting(Vet::getLastName).containsOnly("load 3");
+    }
+
+    @Test
+    void shouldStopRefreshesWithTheBean() {
+        ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+        VetRoster roster = new VetRoster(this.cache, this::loadRoster, Duration.ofHours(1), refreshExecutor);
+        roster.destroy();
+        assertThat(refreshExecutor.isShutdown()).isTrue();
+    }
+
+    @Test
+    void shouldPageInIdOrder() {
+        VetRoster roster = new VetRoster(this.cache, this::loadRoster, Duration.ofHours(1), this.refreshes::add);
+        assertThat(roster.all()).extracting(Vet::getId).containsExactly(4, 3, 2, 1);
+        assertThat(roster.page(0, 2)).extracting(Vet::getId).containsExactly(1, 2);
+        assertThat(roster.page(2, 5)).extracting(Vet::getId).containsExactly(3, 4);
+        assertThat(roster.page(4, 5)).isEmpty();
+        assertThat(this.loads).hasValue(1);
+    }
+
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service.clinicService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.mapper.OwnerMapper;
+import org.springframework.samples.petclinic.mapper.PetMapper;
+import org.springframework.samples.petclinic.mapper.VetMapper;
+import org.springframework.samples.petclinic.mapper.VisitMapper;
+import org.springframework.samples.petclinic.model.Association;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.rest.dto.OwnerDto;
+import org.springframework.samples.petclinic.rest.dto.PetDto;
+import org.springframework.samples.petclinic.rest.dto.VisitDto;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.samples.petclinic.util.StatementRecorder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * <p> Base class for guarding the number of SQL statements each {@link ClinicService} read costs with the JPA
+ * repositories. All associations are mapped lazily, so every result is also mapped to its DTO after the transaction
+ * has ended, as the REST controllers do: whatever an operation's entity graph misses fails there. The service and
+ * second-level caches are emptied before each test, so every test starts from the database. </p>
+ * <p> Concrete subclasses activate a JPA-based repository profile. </p>
+ */
+@SpringBootTest
+@Import(StatementRecorder.class)
+abstract class AbstractClinicServiceStatementCountTests {
+
+    @Autowired
+    protected ClinicService clinicService;
+
+    @Autowired
+    protected OwnerMapper ownerMapper;
+
+    @Autowired
+    protected PetMapper petMapper;
+
+    @Autowired
+    protected VetMapper vetMapper;
+
+    @Autowired
+    protected VisitMapper visitMapper;
+
+    @Autowired
+    protected StatementRecorder statementRecorder;
+
+    @Autowired
+    protected EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    protected MeterRegistry meterRegistry;
+
+    @Autowired
+    protected CacheManager cacheManager;
+
+    @Autowired
+    protected EntityManager entityManager;
+
+    @Autowired
+    protected PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void resetRecorder() {
+        clearServiceCaches();
+        this.entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        this.statementRecorder.reset();
+    }
+
+    private void clearServiceCaches() {
+        this.cacheManager.getCacheNames().forEach(name -> this.cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void shouldFindOwnerWithPetsAndVisitsInSingleStatement() {
+        Owner owner = this.clinicService.findOwnerById(6);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        OwnerDto ownerDto = this.ownerMapper.toOwnerDto(owner);
+        assertThat(ownerDto.getPets()).hasSize(2);
+        assertThat(ownerDto.getPets()).allSatisfy(pet -> {
+            assertThat(pet.getType().getName()).isEqualTo("cat");
+            assertThat(pet.getVisits()).hasSize(2);
+        });
+    }
+
+    @Test
+    void shouldNotReadTheAssociationsLeftOut() {
+        Owner owner = this.clinicService.findOwnerById(6, EnumSet.of(Association.PETS));
+        assertThat(this.ownerMapper.toOwnerDto(owner, EnumSet.of(Association.PETS)).getPets()).hasSize(2);
+        assertThat(this.clinicService.findAllOwners(5, 2, EnumSet.noneOf(Association.class))).hasSize(2);
+        Pet pet = this.clinicService.findPetById(7, EnumSet.noneOf(Association.class));
+        assertThat(this.petMapper.toPetDto(pet, EnumSet.noneOf(Association.class)).getName()).isEqualTo("Samantha");
+        List<String> statements = this.statementRecorder.getStatements();
+        assertThat(statements).hasSize(4).noneMatch(sql -> sql.toLowerCase(Locale.ROOT).contains("visits"));
+        // the page of owners is read by ids, then without their pets
+        assertThat(statements.subList(1, 3)).noneMatch(sql -> sql.toLowerCase(Locale.ROOT).contains("pets"));
+    }
+
+    @Test
+    void shouldStreamOwnersWithPetsAndVisitsByChunk() {
+        List<OwnerDto> owners = new ArrayList<>();
+        this.clinicService.streamAllOwners(owner -> owners.add(this.ownerMapper.toOwnerDto(owner)));
+        assertThat(owners).extracting("id").containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(owners.get(5).getPets()).allSatisfy(pet -> assertThat(pet.getVisits()).hasSize(2));
+        // the cursor over the owner ids, then one read of the aggregates for the single fetch
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldListOwnersInSingleStatement() {
+        Collection<Owner> owners = this.clinicService.findAllOwners();
+        assertThat(this.ownerMapper.toOwnerDtoCollection(owners)).hasSize(10);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        this.statementRecorder.reset();
+        owners = this.clinicService.findOwnerByLastName("Davis");
+        assertThat(this.ownerMapper.toOwnerDtoCollection(owners)).extracting("id").containsExactlyInAnyOrder(2, 4);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldPageOwnersByIdsThenAggregates() {
+        List<OwnerDto> owners = this.ownerMapper.toOwnerDtoCollection(this.clinicService.findAllOwners(5, 2));
+        assertThat(owners).extracting("id").containsExactly(6, 7);
+        assertThat(owners.get(0).getPets()).hasSize(2);
+        // the page is cut on owner ids, not on the rows of the fetch join
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFindPetWithoutLoadingOtherPetsOfTheOwner() {
+        Pet pet = this.clinicService.findPetById(7);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        PetDto petDto = this.petMapper.toPetDto(pet);
+        assertThat(petDto.getOwnerId()).isEqualTo(6);
+        assertThat(petDto.getType().getName()).isEqualTo("cat");
+        assertThat(petDto.getVisits()).hasSize(2);
+        assertThat(this.statementRecorder.getStatements().get(0)).doesNotContainIgnoringCase("join pets");
+    }
+
+    @Test
+    void shouldListPetsWithoutLoadingOwners() {
+        Collection<PetDto> pets = this.petMapper.toPetsDto(this.clinicService.findAllPets());
+        assertThat(pets).hasSize(13);
+        assertThat(pets).extracting("ownerId").doesNotContainNull();
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+        assertThat(this.statementRecorder.getStatements().get(0)).doesNotContainIgnoringCase("owners");
+
+        this.statementRecorder.reset();
+        pets = this.petMapper.toPetsDto(this.clinicService.findAllPets(6, 2));
+        assertThat(pets).extracting("id").containsExactly(7, 8);
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldListVisitsWithoutLoadingPetsOwnersOrOtherVisits() {
+        Collection<Visit> visits = this.clinicService.findAllVisits();
+        Collection<VisitDto> visitDtos = this.visitMapper.toVisitsDto(visits);
+        assertThat(visitDtos).extracting("petId").containsExactlyInAnyOrder(7, 8, 8, 7);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+        assertThat(this.statementRecorder.getStatements().get(0)).doesNotContainIgnoringCase("owners");
+
+        this.statementRecorder.reset();
+        assertThat(this.visitMapper.toVisitsDto(this.clinicService.findAllVisits(1, 2))).extracting("id")
+            .containsExactly(2, 3);
+        assertThat(this.visitMapper.toVisitDto(this.clinicService.findVisitById(3)).getPetId()).isEqualTo(8);
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldLoadVetsWithSpecialtiesInSingleStatement() {
+        Vet vet = this.clinicService.findVetById(3);
+        assertThat(this.vetMapper.toVetDto(vet).getSpecialties()).hasSize(2);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        this.statementRecorder.reset();
+        assertThat(this.vetMapper.toVetDtos(this.clinicService.findAllVets())).hasSize(6);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        // further listings are served from the roster
+        assertThat(this.vetMapper.toVetDtos(this.clinicService.findVets())).hasSize(6);
+        assertThat(this.vetMapper.toVetDtos(this.clinicService.findAllVets(2, 2))).extracting("id")
+            .containsExactly(3, 4);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldServeReferenceDataFromSecondLevelCache() {
+        assertThat(this.clinicService.findPetTypeById(2).getName()).isEqualTo("dog");
+        assertThat(this.clinicService.findSpecialtyById(1).getName()).isEqualTo("radiology");
+        assertThat(this.clinicService.findPetTypeByName("cat").getId()).isEqualTo(1);
+        assertThat(this.clinicService.findSpecialtiesByNameIn(Set.of("surgery", "dentistry"))).hasSize(2);
+        int statements = this.statementRecorder.count();
+
+        clearServiceCaches();
+        assertThat(this.clinicService.findPetTypeById(2).getName()).isEqualTo("dog");
+        assertThat(this.clinicService.findSpecialtyById(1).getName()).isEqualTo("radiology");
+        assertThat(this.clinicService.findPetTypeByName("cat").getId()).isEqualTo(1);
+        assertThat(this.clinicService.findSpecialtiesByNameIn(Set.of("surgery", "dentistry"))).hasSize(2);
+        assertThat(this.statementRecorder.getStatements()).hasSize(statements);
+        assertThat(this.meterRegistry.get("hibernate.second.level.cache.requests")
+            .tags("region", "petTypes", "result", "hit").functionCounter().count()).isPositive();
+    }
+
+    @Test
+    void shouldServeVetWithSpecialtiesFromSecondLevelCache() {
+        assertThat(this.clinicService.findVetById(3).getNrOfSpecialties()).isEqualTo(2);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+
+        this.statementRecorder.reset();
+        Vet vet = this.clinicService.findVetById(3);
+        assertThat(this.statementRecorder.count()).isZero();
+        assertThat(this.vetMapper.toVetDto(vet).getSpecialties()).extracting("name")
+            .containsExactly("dentistry", "surgery");
+    }
+
+    @Test
+    void shouldReadWithoutDirtyCheckingInReadOnlyTransactions() {
+        TransactionTemplate readOnly = new TransactionTemplate(this.transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            Session session = this.entityManager.unwrap(Session.class);
+            assertThat(session.isDefaultReadOnly()).isTrue();
+            assertThat(session.getHibernateFlushMode()).isEqualTo(FlushMode.MANUAL);
+
+            Pet pet = this.clinicService.findPetById(7);
+            assertThat(session.isReadOnly(pet)).isTrue();
+            pet.setName("Changed");
+        });
+        // the change was neither dirty checked nor flushed
+        assertThat(this.clinicService.findPetById(7).getName()).isEqualTo("Samantha");
+    }
+
+    @Test
+    void shouldReadAllVisitsThroughStatelessSession() {
+        TransactionTemplate readOnly = new TransactionTemplate(this.transactionManager);
+        readOnly.setReadOnly(true);
+        Collection<Visit> visits = readOnly.execute(status -> {
+            Collection<Visit> read = this.clinicService.findAllVisits();
+            assertThat(this.entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+            return read;
+        });
+        assertThat(visits).hasSize(4);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+        assertThat(visits).extracting(visit -> visit.getPet().getName())
+            .containsExactlyInAnyOrder("Samantha", "Max", "Max", "Samantha");
+    }
+
+}
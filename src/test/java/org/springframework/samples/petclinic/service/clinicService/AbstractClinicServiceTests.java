@@ -24,7 +24,9 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -190,6 +192,38 @@ abstract class AbstractClinicServiceTests {
         assertThat(visit.getId()).isNotNull();
     }
 
+    @Test
+    @Transactional
+    void shouldInsertPetsAndVisitsInBulk() {
+        Owner owner6 = this.clinicService.findOwnerById(6);
+        int found = owner6.getPets().size();
+        PetType dog = this.clinicService.findPetTypeById(2);
+        List<Pet> pets = new ArrayList<>();
+        List<Visit> visits = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Pet pet = new Pet();
+            pet.setName("bulk" + i);
+            pet.setType(dog);
+            pet.setBirthDate(LocalDate.now());
+            owner6.addPet(pet);
+            pets.add(pet);
+            Visit visit = new Visit();
+            visit.setDescription("bulk visit " + i);
+            pet.addVisit(visit);
+            visits.add(visit);
+        }
+
+        this.clinicService.savePets(pets);
+        this.clinicService.saveVisits(visits);
+
+        assertThat(pets).extracting(Pet::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(visits).extracting(Visit::getId).doesNotContainNull().doesNotHaveDuplicates();
+        owner6 = this.clinicService.findOwnerById(6);
+        assertThat(owner6.getPets().size()).isEqualTo(found + 3);
+        assertThat(this.clinicService.findVisitsByPetId(pets.get(2).getId()))
+            .extracting(Visit::getDescription).containsExactly("bulk visit 2");
+    }
+
     @Test
        void shouldFindVisitsByPetId() throws Exception {
         Collection<Visit> visits = this.clinicService.findVisitsByPetId(7);
@@ -342,6 +376,84 @@ abstract class AbstractClinicServiceTests {
         assertThat(owner3.getFirstName()).isEqualTo("Eduardo");
     }
 
+    @Test
+    void shouldFindOwnersPageByPage(){
+        assertThat(this.clinicService.findAllOwners(0, 4)).extracting("id").containsExactly(1, 2, 3, 4);
+        assertThat(this.clinicService.findAllOwners(4, 4)).extracting("id").containsExactly(5, 6, 7, 8);
+        assertThat(this.clinicService.findAllOwners(8, 4)).extracting("id").containsExactly(9, 10);
+        Owner owner6 = this.clinicService.findAllOwners(5, 1).iterator().next();
+        assertThat(owner6.getPets()).hasSize(2);
+        assertThat(owner6.getPet("Samantha").getVisits()).hasSize(2);
+    }
+
+    @Test
+    void shouldFindOwnersByLastNamePageByPage(){
+        assertThat(this.clinicService.findOwnerByLastName("Davis", 0, 1)).extracting("id").containsExactly(2);
+        assertThat(this.clinicService.findOwnerByLastName("Davis", 2, 1)).extracting("id").containsExactly(4);
+        assertThat(this.clinicService.findOwnerByLastName("Davis", 4, 1)).isEmpty();
+    }
+
+    @Test
+    void shouldFindOwnersAndPetsWithTheAssociationsAskedFor(){
+        Set<Association> none = EnumSet.noneOf(Association.class);
+        Owner owner6 = this.clinicService.findOwnerById(6, EnumSet.of(Association.PETS));
+        assertThat(owner6.getLastName()).isEqualTo("Coleman");
+        assertThat(owner6.getPets()).extracting("name").containsExactlyInAnyOrder("Samantha", "Max");
+        assertThat(owner6.getPet("Samantha").getType().getName()).isEqualTo("cat");
+        assertThat(this.clinicService.findOwnerById(6, none).getFirstName()).isEqualTo("Jean");
+        assertThat(this.clinicService.findOwnerById(99, none)).isNull();
+        assertThat(this.clinicService.findAllOwners(5, 2, none)).extracting("id").containsExactly(6, 7);
+        assertThat(this.clinicService.findOwnerByLastName("Davis", 0, 2, none)).extracting("id").containsExactly(2, 4);
+
+        Pet pet7 = this.clinicService.findPetById(7, none);
+        assertThat(pet7.getName()).isEqualTo("Samantha");
+        assertThat(pet7.getType().getName()).isEqualTo("cat");
+        assertThat(pet7.getOwner().getId()).isEqualTo(6);
+        assertThat(this.clinicService.findAllPets(6, 2, none)).extracting("id").containsExactly(7, 8);
+    }
+
+    @Test
+    void shouldStreamAllOwnersInIdOrder(){
+        List<Owner> owners = new ArrayList<>();
+        this.clinicService.streamAllOwners(owners::add);
+        assertThat(owners).extracting("id").containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        Owner owner6 = owners.get(5);
+        assertThat(owner6.getPets()).hasSize(2);
+        assertThat(owner6.getPet("Samantha").getType().getName()).isEqualTo("cat");
+        assertThat(owner6.getPet("Samantha").getVisits()).hasSize(2);
+    }
+
+    @Test
+    void shouldStreamAllVisitsInIdOrder(){
+        List<Integer> ids = new ArrayList<>();
+        List<String> petsAndOwners = new ArrayList<>();
+        this.clinicService.streamAllVisits(visit -> {
+            ids.add(visit.getId());
+            petsAndOwners.add(visit.getPet().getName() + ":" + visit.getPet().getOwner().getLastName());
+        });
+        assertThat(ids).containsExactly(1, 2, 3, 4);
+        assertThat(petsAndOwners.get(0)).isEqualTo("Samantha:Coleman");
+        assertThat(petsAndOwners.get(2)).endsWith(":Coleman");
+    }
+
+    @Test
+    void shouldFindPetsVetsAndVisitsPageByPage(){
+        Collection<Pet> pets = this.clinicService.findAllPets(6, 2);
+        assertThat(pets).extracting("id").containsExactly(7, 8);
+        Pet pet7 = pets.iterator().next();
+        assertThat(pet7.getType().getName()).isEqualTo("cat");
+        assertThat(pet7.getOwner().getId()).isEqualTo(6);
+        assertThat(pet7.getVisits()).hasSize(2);
+
+        Collection<Vet> vets = this.clinicService.findAllVets(2, 2);
+        assertThat(vets).extracting("id").containsExactly(3, 4);
+        assertThat(vets.iterator().next().getNrOfSpecialties()).isEqualTo(2);
+
+        assertThat(this.clinicService.findAllVisits(1, 2)).extracting("id").containsExactly(2, 3);
+        assertThat(this.clinicService.findAllPetTypes(4, 10)).extracting("id").containsExactly(5, 6);
+        assertThat(this.clinicService.findAllSpecialties(0, 2)).extracting("id").containsExactly(1, 2);
+    }
+
     @Test
     @Transactional
     void shouldDeleteOwner(){
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.service.clinicService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.config.CachingConfig;
+import org.springframework.samples.petclinic.model.Association;
+import org.springframework.samples.petclinic.model.Owner;
+import org.springframework.samples.petclinic.model.Pet;
+import org.springframework.samples.petclinic.model.PetType;
+import org.springframework.samples.petclinic.model.Specialty;
+import org.springframework.samples.petclinic.model.Vet;
+import org.springframework.samples.petclinic.model.Visit;
+import org.springframework.samples.petclinic.service.ClinicService;
+import org.springframework.samples.petclinic.util.StatementRecorder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks the reference-data, owner, owner search, vet roster and response caches of {@link ClinicService}, and the
+ * versions counted alongside them. The jdbc profile is used, as it has no second-level
+ * cache of its own that would hide the round trips saved.
+ */
+@SpringBootTest
+@ActiveProfiles({"jdbc", "hsqldb"})
+@Import(StatementRecorder.class)
+class ClinicServiceCachingTests {
+
+    @Autowired
+    private ClinicService clinicService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void clearCaches() {
+        this.cacheManager.getCacheNames().forEach(name -> this.cacheManager.getCache(name).clear());
+        this.statementRecorder.reset();
+    }
+
+    @Test
+    void shouldReadPetTypesAndSpecialtiesOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(this.clinicService.findPetTypeById(2).getName()).isEqualTo("dog");
+            assertThat(this.clinicService.findPetTypeByName("cat").getId()).isEqualTo(1);
+            assertThat(this.clinicService.findSpecialtyById(1).getName()).isEqualTo("radiology");
+            assertThat(this.clinicService.findSpecialtiesByNameIn(Set.of("surgery", "dentistry"))).hasSize(2);
+        }
+        assertThat(this.statementRecorder.count()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldNotCacheMissingPetTypes() {
+        assertThat(this.clinicService.findPetTypeByName("unicorn")).isNull();
+        assertThat(this.clinicService.findPetTypeByName("unicorn")).isNull();
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictPetTypesOnWrite() {
+        assertThat(this.clinicService.findPetTypeByName("cat").getId()).isEqualTo(1);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            PetType petType = this.clinicService.findPetTypeById(1);
+            petType.setName("kitten");
+            this.clinicService.savePetType(petType);
+            // evicted at once, so the transaction reads its own write
+            assertThat(this.clinicService.findPetTypeByName("cat")).isNull();
+            assertThat(this.clinicService.findPetTypeById(1).getName()).isEqualTo("kitten");
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.findPetTypeById(1).getName()).isEqualTo("cat");
+        assertThat(this.clinicService.findPetTypeByName("cat").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictSpecialtiesOnWrite() {
+        assertThat(this.clinicService.findSpecialtiesByNameIn(Set.of("dermatology"))).isEmpty();
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Specialty specialty = new Specialty();
+            specialty.setName("dermatology");
+            this.clinicService.saveSpecialty(specialty);
+            assertThat(this.clinicService.findSpecialtiesByNameIn(Set.of("dermatology"))).hasSize(1);
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.findSpecialtiesByNameIn(Set.of("dermatology"))).isEmpty();
+    }
+
+    @Test
+    void shouldReadOwnerAggregateOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(this.clinicService.findOwnerById(6).getPet("Samantha").getVisits()).hasSize(2);
+        }
+        assertThat(this.clinicService.findOwnerById(99)).isNull();
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+        assertThat(this.meterRegistry.get("cache.gets").tags("cache", "owners", "result", "hit")
+            .functionCounter().count()).isGreaterThanOrEqualTo(2);
+        assertThat(this.meterRegistry.find("cache.evictions").tags("cache", "owners").functionCounter()).isNotNull();
+    }
+
+    @Test
+    void shouldEvictOnlyTheOwnerOfAVisitedPet() {
+        this.clinicService.findOwnerById(1);
+        this.clinicService.findOwnerById(6);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            // as built from a request: the pet is known by ID only
+            Pet pet = new Pet();
+            pet.setId(7);
+            Visit visit = new Visit();
+            visit.setPet(pet);
+            visit.setDate(LocalDate.now());
+            visit.setDescription("checkup");
+            this.clinicService.saveVisit(visit);
+            assertThat(this.clinicService.findOwnerById(6).getPet("Samantha").getVisits()).hasSize(3);
+            status.setRollbackOnly();
+        });
+        this.statementRecorder.reset();
+        this.clinicService.findOwnerById(1);
+        assertThat(this.statementRecorder.count()).isZero();
+        assertThat(this.clinicService.findOwnerById(6).getPet("Samantha").getVisits()).hasSize(2);
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictTheOwnersOfVisitedPetsReadInOneQuery() {
+        this.clinicService.findOwnerById(1);
+        this.clinicService.findOwnerById(2);
+        this.clinicService.findOwnerById(6);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            List<Visit> visits = new ArrayList<>();
+            for (int petId : new int[]{1, 7, 8}) {
+                Pet pet = new Pet();
+                pet.setId(petId);
+                Visit visit = new Visit();
+                visit.setPet(pet);
+                visit.setDate(LocalDate.now());
+                visit.setDescription("checkup");
+                visits.add(visit);
+            }
+            this.statementRecorder.reset();
+            this.clinicService.saveVisits(visits);
+            assertThat(this.statementRecorder.getStatements())
+                .filteredOn(sql -> sql.toLowerCase(Locale.ROOT).startsWith("select"))
+                .singleElement().asString().containsIgnoringCase("from pets");
+            assertThat(this.clinicService.findOwnerById(1).getPet("Leo").getVisits()).hasSize(1);
+            assertThat(this.clinicService.findOwnerById(6).getPet("Max").getVisits()).hasSize(3);
+            this.statementRecorder.reset();
+            this.clinicService.findOwnerById(2);
+            assertThat(this.statementRecorder.count()).isZero();
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void shouldEvictOwnerOnOwnerAndPetWrites() {
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        this.clinicService.findOwnerById(6);
+        transaction.executeWithoutResult(status -> {
+            Owner owner = this.clinicService.findOwnerById(6);
+            owner.setCity("Sun Prairie");
+            this.clinicService.saveOwner(owner);
+            Pet pet = owner.getPet("Max");
+            pet.setName("Maximus");
+            this.clinicService.savePet(pet);
+            Owner reread = this.clinicService.findOwnerById(6);
+            assertThat(reread).isNotSameAs(owner);
+            assertThat(reread.getCity()).isEqualTo("Sun Prairie");
+            assertThat(reread.getPet("Maximus")).isNotNull();
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.findOwnerById(6).getCity()).isEqualTo("Monona");
+    }
+
+    @Test
+    void shouldEvictAllOwnersOnPetTypeWrite() {
+        this.clinicService.findOwnerById(1);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            PetType petType = this.clinicService.findPetTypeById(1);
+            petType.setName("kitten");
+            this.clinicService.savePetType(petType);
+            assertThat(this.clinicService.findOwnerById(1).getPet("Leo").getType().getName()).isEqualTo("kitten");
+            status.setRollbackOnly();
+        });
+    }
+
+    @Test
+    void shouldServeAllVetListingsFromOneRoster() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(this.clinicService.findAllVets()).hasSize(6);
+            assertThat(this.clinicService.findVets()).hasSize(6);
+            assertThat(this.clinicService.findAllVets(2, 2)).extracting(Vet::getId).containsExactly(3, 4);
+        }
+        assertThat(this.statementRecorder.count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("cache.gets").tags("cache", "vets", "result", "hit")
+            .functionCounter().count()).isGreaterThanOrEqualTo(8);
+    }
+
+    @Test
+    void shouldInvalidateVetRosterOnVetAndSpecialtyWrites() {
+        assertThat(this.clinicService.findAllVets()).hasSize(6);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Vet vet = new Vet();
+            vet.setFirstName("John");
+            vet.setLastName("Dow");
+            this.clinicService.saveVet(vet);
+            // the writing transaction reads its own change
+            assertThat(this.clinicService.findAllVets()).hasSize(7);
+            assertThat(this.clinicService.findAllVets(6, 10)).extracting(Vet::getLastName).containsExactly("Dow");
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.findAllVets()).hasSize(6);
+
+        transaction.executeWithoutResult(status -> {
+            Specialty specialty = this.clinicService.findSpecialtyById(1);
+            specialty.setName("imaging");
+            this.clinicService.saveSpecialty(specialty);
+            assertThat(this.clinicService.findAllVets()).flatExtracting(Vet::getSpecialties)
+                .extracting(Specialty::getName).contains("imaging").doesNotContain("radiology");
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.findAllVets()).flatExtracting(Vet::getSpecialties)
+            .extracting(Specialty::getName).contains("radiology");
+    }
+
+    @Test
+    void shouldServeRepeatedOwnerSearchesFromCache() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(this.clinicService.findOwnerByLastName("Davis")).extracting(Owner::getId)
+                .containsExactlyInAnyOrder(2, 4);
+            assertThat(this.clinicService.findOwnerByLastName("Davis", 0, 1)).extracting(Owner::getId)
+                .containsExactly(2);
+        }
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldServeReadsLeavingAssociationsOutFromWholeAggregatesOnly() {
+        Set<Association> none = EnumSet.noneOf(Association.class);
+        for (int i = 0; i < 2; i++) {
+            assertThat(this.clinicService.findOwnerById(6, none).getLastName()).isEqualTo("Coleman");
+            assertThat(this.clinicService.findOwnerByLastName("Davis", 0, 1, none)).extracting(Owner::getId)
+                .containsExactly(2);
+        }
+        assertThat(this.statementRecorder.count()).isEqualTo(4);
+
+        this.clinicService.findOwnerById(6);
+        this.clinicService.findOwnerByLastName("Davis", 0, 1);
+        this.statementRecorder.reset();
+        assertThat(this.clinicService.findOwnerById(6, none).getLastName()).isEqualTo("Coleman");
+        assertThat(this.clinicService.findOwnerByLastName("Davis", 0, 1, none)).extracting(Owner::getId)
+            .containsExactly(2);
+        assertThat(this.statementRecorder.count()).isZero();
+    }
+
+    @Test
+    void shouldEvictOnlyOwnerSearchesMatchingOldAndNewLastName() {
+        this.clinicService.findOwnerByLastName("Dav");
+        this.clinicService.findOwnerByLastName("Est");
+        this.clinicService.findOwnerByLastName("Fr");
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Owner owner = this.clinicService.findOwnerById(2);
+            owner.setLastName("Estaban");
+            this.clinicService.saveOwner(owner);
+            assertThat(this.clinicService.findOwnerByLastName("Dav")).extracting(Owner::getId).containsExactly(4);
+            assertThat(this.clinicService.findOwnerByLastName("Est")).extracting(Owner::getId)
+                .containsExactlyInAnyOrder(2, 10);
+            status.setRollbackOnly();
+        });
+        this.statementRecorder.reset();
+        assertThat(this.clinicService.findOwnerByLastName("Fr")).extracting(Owner::getId).containsExactly(1);
+        assertThat(this.statementRecorder.count()).isZero();
+        assertThat(this.clinicService.findOwnerByLastName("Dav")).extracting(Owner::getId)
+            .containsExactlyInAnyOrder(2, 4);
+        assertThat(this.clinicService.findOwnerByLastName("Est")).extracting(Owner::getId).containsExactly(10);
+        assertThat(this.statementRecorder.count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictOwnerSearchesReturningTheOwnerOfAVisitedPet() {
+        this.clinicService.findOwnerByLastName("Coleman");
+        this.clinicService.findOwnerByLastName("Franklin");
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+        transaction.executeWithoutResult(status -> {
+            Pet pet = new Pet();
+            pet.setId(7);
+            Visit visit = new Visit();
+            visit.setPet(pet);
+            visit.setDate(LocalDate.now());
+            visit.setDescription("checkup");
+            this.clinicService.saveVisit(visit);
+            this.statementRecorder.reset();
+            this.clinicService.findOwnerByLastName("Franklin");
+            assertThat(this.statementRecorder.count()).isZero();
+            assertThat(this.clinicService.findOwnerByLastName("Coleman")).singleElement()
+                .satisfies(owner -> assertThat(owner.getPet("Samantha").getVisits()).hasSize(3));
+            assertThat(this.statementRecorder.count()).isEqualTo(1);
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.findOwnerByLastName("Coleman")).singleElement()
+            .satisfies(owner -> assertThat(owner.getPet("Samantha").getVisits()).hasSize(2));
+    }
+
+    @Test
+    void shouldEmptyResponseCachesOnReferenceDataWrites() {
+        Cache petTypeResponses = this.cacheManager.getCache(CachingConfig.PET_TYPE_RESPONSES);
+        Cache specialtyResponses = this.cacheManager.getCache(CachingConfig.SPECIALTY_RESPONSES);
+        Cache vetResponses = this.cacheManager.getCache(CachingConfig.VET_RESPONSES);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+
+        petTypeResponses.put("page", "cached");
+        vetResponses.put("page", "cached");
+        transaction.executeWithoutResult(status -> {
+            this.clinicService.saveVet(this.clinicService.findVetById(2));
+            assertThat(vetResponses.get("page")).isNull();
+            status.setRollbackOnly();
+        });
+        assertThat(petTypeResponses.get("page")).isNotNull();
+
+        specialtyResponses.put("page", "cached");
+        vetResponses.put("page", "cached");
+        transaction.executeWithoutResult(status -> {
+            this.clinicService.saveSpecialty(this.clinicService.findSpecialtyById(1));
+            status.setRollbackOnly();
+        });
+        assertThat(specialtyResponses.get("page")).isNull();
+        assertThat(vetResponses.get("page")).isNull();
+        assertThat(petTypeResponses.get("page")).isNotNull();
+
+        transaction.executeWithoutResult(status -> {
+            this.clinicService.savePetType(this.clinicService.findPetTypeById(1));
+            status.setRollbackOnly();
+        });
+        assertThat(petTypeResponses.get("page")).isNull();
+    }
+
+    @Test
+    void shouldChangeVersionsOnlyOnceWritesCommit() {
+        long owner6 = this.clinicService.getOwnerVersion(6);
+        long owner1 = this.clinicService.getOwnerVersion(1);
+        long visits = this.clinicService.getVersion(Visit.class);
+        long vets = this.clinicService.getVersion(Vet.class);
+        TransactionTemplate transaction = new TransactionTemplate(this.transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            Owner owner = this.clinicService.findOwnerById(6);
+            owner.setCity("Sun Prairie");
+            this.clinicService.saveOwner(owner);
+            status.setRollbackOnly();
+        });
+        assertThat(this.clinicService.getOwnerVersion(6)).isEqualTo(owner6);
+        assertThat(this.clinicService.getVersion(Visit.class)).isEqualTo(visits);
+
+        transaction.executeWithoutResult(status -> {
+            this.clinicService.saveOwner(this.clinicService.findOwnerById(6));
+            // not before the commit, so no reader tags the old state with the new version
+            assertThat(this.clinicService.getOwnerVersion(6)).isEqualTo(owner6);
+        });
+        assertThat(this.clinicService.getOwnerVersion(6)).isGreaterThan(owner6);
+        assertThat(this.clinicService.getVersion(Visit.class)).isGreaterThan(visits);
+        assertThat(this.clinicService.getOwnerVersion(1)).isEqualTo(owner1);
+        assertThat(this.clinicService.getVersion(Vet.class)).isEqualTo(vets);
+
+        // owners embed the types of their pets
+        transaction.executeWithoutResult(status -> this.clinicService.savePetType(this.clinicService.findPetTypeById(1)));
+        assertThat(this.clinicService.getOwnerVersion(1)).isGreaterThan(owner1);
+        assertThat(this.clinicService.getVersion(Vet.class)).isEqualTo(vets);
+
+        transaction.executeWithoutResult(status -> this.clinicService.saveSpecialty(this.clinicService.findSpecialtyById(1)));
+        assertThat(this.clinicService.getVersion(Vet.class)).isGreaterThan(vets);
+
+        // deleting a pet type deletes the visits of its pets as well
+        PetType hamster = new PetType();
+        hamster.setName("hamster");
+        transaction.executeWithoutResult(status -> this.clinicService.savePetType(hamster));
+        visits = this.clinicService.getVersion(Visit.class);
+        transaction.executeWithoutResult(status -> this.clinicService.deletePetType(hamster));
+        assertThat(this.clinicService.getVersion(Visit.class)).isGreaterThan(visits);
+    }
+
+}
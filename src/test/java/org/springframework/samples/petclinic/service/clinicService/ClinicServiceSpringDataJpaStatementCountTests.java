@@ -0,0 +1,33 @@
+package org.springframework.samples.petclinic.service.clinicService;
+
+import jakarta.persistence.EntityManager;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles({"spring-data-jpa", "hsqldb"})
+class ClinicServiceSpringDataJpaStatementCountTests extends AbstractClinicServiceStatementCountTests {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    @Transactional(readOnly = true)
+    void shouldListPagesWithoutManagedEntities() {
+        assertThat(this.ownerMapper.toOwnerDtoCollection(this.clinicService.findAllOwners(0, 10))).hasSize(10);
+        assertThat(this.petMapper.toPetsDto(this.clinicService.findAllPets(0, 20))).hasSize(13);
+        assertThat(this.visitMapper.toVisitsDto(this.clinicService.findAllVisits(0, 10))).hasSize(4);
+        assertThat(this.vetMapper.toVetDtos(this.clinicService.findAllVets(0, 10))).hasSize(6);
+        assertThat(this.clinicService.findAllPetTypes(0, 10)).hasSize(6);
+        assertThat(this.clinicService.findAllSpecialties(0, 10)).hasSize(3);
+
+        // projected rows are neither hydrated into entities nor kept for dirty checking
+        assertThat(this.entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+}